@@ -0,0 +1,352 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.apt;
+
+import java.io.*;
+import java.util.*;
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.*;
+import javax.tools.*;
+
+/**
+ * 在编译期生成 Component 索引文件 (META-INF/jetbrick-webmvc.index).
+ *
+ * <p>WebInitializer 启动时如果发现了索引文件，将直接从索引中加载 @Controller/@Managed/@IocBean，
+ * 以及 Controller 中所有 Action 的 URL 和 HttpMethod，不再扫描 classpath.</p>
+ *
+ * <h2>索引文件格式 (每行一条记录，使用 TAB 分隔)：</h2>
+ * <pre>
+ * package    {packageName}
+ * annotation    {annotationClassName}    {className}
+ * action    {controllerClassName}    {methodName}    {parameterTypes}    {httpMethods}    {url}
+ * </pre>
+ *
+ * <p>package 记录了参与编译 (已经建立索引) 的 package，只有 web.scan.packages 被这些 package 覆盖的时候，
+ * WebInitializer 才会使用索引，否则仍然扫描 classpath.</p>
+ *
+ * <p>注意：为了不依赖 jetbrick-webmvc，这里的 Annotation 都使用类名来引用.</p>
+ */
+public final class ComponentIndexProcessor extends AbstractProcessor {
+    // 和 jetbrick.web.mvc.ComponentIndex.INDEX_FILE 保持一致
+    public static final String INDEX_FILE = "META-INF/jetbrick-webmvc.index";
+
+    private static final String IOC_BEAN = "jetbrick.ioc.annotation.IocBean";
+    private static final String CONTROLLER = "jetbrick.web.mvc.action.Controller";
+    private static final String MANAGED = "jetbrick.web.mvc.Managed";
+    private static final String ACTION = "jetbrick.web.mvc.action.Action";
+    private static final String[] DEFAULT_HTTP_METHODS = { "GET", "POST" };
+    // 和 jetbrick.util.annotation.ValueConstants.NULL 保持一致
+    private static final String VALUE_NULL = "\u0000\u0001\u0002";
+
+    private Elements elements;
+    private Types types;
+
+    // className -> 该 class 生成的索引记录 (保持顺序)
+    private final Map<String, List<String>> records = new LinkedHashMap<String, List<String>>();
+    // 本次编译中出现过的 class (旧索引中这些 class 的记录需要被替换)
+    private final Set<String> compiledClassNames = new HashSet<String>();
+    // 本次编译中出现过的 package
+    private final Set<String> compiledPackageNames = new TreeSet<String>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<String>(Arrays.asList(IOC_BEAN, CONTROLLER, MANAGED));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndexFile();
+            return false;
+        }
+
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            collectClassNames(type);
+        }
+
+        for (TypeElement annotation : annotations) {
+            String annotationName = annotation.getQualifiedName().toString();
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                String className = getClassName(type);
+                addRecord(className, "annotation\t" + annotationName + "\t" + className);
+                if (CONTROLLER.equals(annotationName)) {
+                    processController(type, className);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void collectClassNames(TypeElement type) {
+        compiledClassNames.add(getClassName(type));
+        compiledPackageNames.add(elements.getPackageOf(type).getQualifiedName().toString());
+        for (TypeElement inner : ElementFilter.typesIn(type.getEnclosedElements())) {
+            collectClassNames(inner);
+        }
+    }
+
+    // 和 AbstractRouter.registerController() 的规则保持一致
+    private void processController(TypeElement type, String className) {
+        if (!type.getModifiers().contains(Modifier.PUBLIC)) {
+            return;
+        }
+
+        // ValueConstants.trimToEmpty()
+        String ctrlPath = getStringValue(findAnnotation(type, CONTROLLER), "value");
+        if (isEmptyOrNull(ctrlPath)) {
+            ctrlPath = "";
+        }
+
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+                continue;
+            }
+
+            AnnotationMirror action = findAnnotation(method, ACTION);
+            if (action == null) {
+                continue;
+            }
+
+            String methodName = method.getSimpleName().toString();
+            // ValueConstants.defaultValue()
+            String actionPath = getStringValue(action, "value");
+            if (isEmptyOrNull(actionPath)) {
+                actionPath = methodName;
+            }
+            String url = removeEnd(ctrlPath, "/") + (actionPath.startsWith("/") ? actionPath : "/" + actionPath);
+
+            StringBuilder parameterTypes = new StringBuilder();
+            for (VariableElement parameter : method.getParameters()) {
+                if (parameterTypes.length() > 0) {
+                    parameterTypes.append(',');
+                }
+                parameterTypes.append(getTypeName(parameter.asType()));
+            }
+
+            StringBuilder httpMethods = new StringBuilder();
+            for (String httpMethod : getEnumValues(action, "method", DEFAULT_HTTP_METHODS)) {
+                if (httpMethods.length() > 0) {
+                    httpMethods.append(',');
+                }
+                httpMethods.append(httpMethod);
+            }
+
+            addRecord(className, "action\t" + className + "\t" + methodName + "\t" + parameterTypes + "\t" + httpMethods + "\t" + url);
+        }
+    }
+
+    private void addRecord(String className, String record) {
+        List<String> list = records.get(className);
+        if (list == null) {
+            list = new ArrayList<String>();
+            records.put(className, list);
+        }
+        if (!list.contains(record)) {
+            list.add(record);
+        }
+    }
+
+    private void writeIndexFile() {
+        Filer filer = processingEnv.getFiler();
+
+        // 增量编译时，只有部分 class 参与了编译，需要合并旧的索引文件
+        Set<String> packageNames = new TreeSet<String>(compiledPackageNames);
+        List<String> lines = new ArrayList<String>();
+        for (String record : readOldIndexFile(filer)) {
+            if (record.startsWith("package\t")) {
+                String packageName = record.substring(8);
+                if (elements.getPackageElement(packageName) != null) {
+                    packageNames.add(packageName);
+                }
+                continue;
+            }
+            String className = getRecordClassName(record);
+            if (compiledClassNames.contains(className) || records.containsKey(className)) {
+                continue; // 已经被重新编译
+            }
+            TypeElement type = elements.getTypeElement(className.replace('$', '.'));
+            if (type == null) {
+                continue; // class 已经被删除
+            }
+            String annotationName = record.startsWith("action\t") ? CONTROLLER : record.split("\t", -1)[1];
+            if (!hasAnnotation(type, annotationName)) {
+                continue; // Annotation 已经被删除
+            }
+            lines.add(record);
+        }
+        for (List<String> list : records.values()) {
+            lines.addAll(list);
+        }
+
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        Writer writer = null;
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            writer = new OutputStreamWriter(file.openOutputStream(), "utf-8");
+            writer.write("# generated by " + getClass().getName() + ", do not edit.\n");
+            for (String packageName : packageNames) {
+                writer.write("package\t");
+                writer.write(packageName);
+                writer.write('\n');
+            }
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + INDEX_FILE + ": " + e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    private List<String> readOldIndexFile(Filer filer) {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = null;
+        try {
+            FileObject file = filer.getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            reader = new BufferedReader(new InputStreamReader(file.openInputStream(), "utf-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() > 0 && line.charAt(0) != '#') {
+                    lines.add(line);
+                }
+            }
+        } catch (Exception e) {
+            // 索引文件不存在 (第一次编译)
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return lines;
+    }
+
+    // annotation 记录的第三列，action 记录的第二列
+    private static String getRecordClassName(String record) {
+        String[] values = record.split("\t", -1);
+        return "action".equals(values[0]) ? values[1] : values[2];
+    }
+
+    private AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(annotationName)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    // 包括 @Inherited 继承的 Annotation (和 RoundEnvironment.getElementsAnnotatedWith() 一致)
+    private boolean hasAnnotation(TypeElement type, String annotationName) {
+        for (AnnotationMirror annotation : elements.getAllAnnotationMirrors(type)) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(annotationName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private AnnotationValue getAnnotationValue(AnnotationMirror annotation, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+        return null; // 使用默认值
+    }
+
+    private String getStringValue(AnnotationMirror annotation, String name) {
+        AnnotationValue value = getAnnotationValue(annotation, name);
+        return (value == null) ? null : (String) value.getValue();
+    }
+
+    private List<String> getEnumValues(AnnotationMirror annotation, String name, String[] defaultValues) {
+        AnnotationValue value = getAnnotationValue(annotation, name);
+        if (value == null) {
+            return Arrays.asList(defaultValues);
+        }
+
+        List<String> results = new ArrayList<String>();
+        Object object = value.getValue();
+        if (object instanceof List) {
+            for (Object item : (List<?>) object) {
+                results.add(((VariableElement) ((AnnotationValue) item).getValue()).getSimpleName().toString());
+            }
+        } else {
+            results.add(((VariableElement) object).getSimpleName().toString());
+        }
+        return results;
+    }
+
+    // 返回可以被 Class.forName() 加载的名称 (内部类使用 $)
+    private String getClassName(TypeElement type) {
+        return elements.getBinaryName(type).toString();
+    }
+
+    // 返回参数类型擦除后的名称，比如: int, java.lang.String[], java.util.Map$Entry
+    private String getTypeName(TypeMirror type) {
+        type = types.erasure(type);
+        if (type.getKind() == TypeKind.ARRAY) {
+            return getTypeName(((ArrayType) type).getComponentType()) + "[]";
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            return getClassName((TypeElement) ((DeclaredType) type).asElement());
+        }
+        return type.toString();
+    }
+
+    private static boolean isEmptyOrNull(String value) {
+        return value == null || value.length() == 0 || VALUE_NULL.equals(value);
+    }
+
+    private static String removeEnd(String str, String remove) {
+        return str.endsWith(remove) ? str.substring(0, str.length() - remove.length()) : str;
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import jetbrick.web.mvc.BoundedPool;
+
+/**
+ * 将字符直接编码到 OutputStream，使用池化的 byte[] 作为编码缓冲，不产生完整的 String/byte[] 副本.
+ *
+ * <p>close() 只会输出剩余的内容并归还缓冲，不会关闭 OutputStream.</p>
+ */
+final class EncodingOutputWriter extends Writer {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final int CHARS_SIZE = 2048;
+    private static final BoundedPool<byte[]> BUFFER_POOL = new BoundedPool<byte[]>(MAX_POOLED_BUFFERS);
+    private static final BoundedPool<char[]> CHARS_POOL = new BoundedPool<char[]>(MAX_POOLED_BUFFERS);
+
+    private final OutputStream out;
+    private final CharsetEncoder encoder;
+    private byte[] bytes;
+    private ByteBuffer bb;
+    private char[] chars; // write(String) 使用的缓冲，第一次使用的时候才借用
+    private char leftover; // 上一次 write 末尾被拆开的 surrogate
+    private boolean hasLeftover;
+
+    public EncodingOutputWriter(OutputStream out, String charsetName) {
+        this.out = out;
+        this.encoder = Charset.forName(charsetName).newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = borrowBuffer();
+        this.bb = ByteBuffer.wrap(bytes);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        if (len == 0) {
+            return;
+        }
+        if (hasLeftover) {
+            hasLeftover = false;
+            encode(CharBuffer.wrap(new char[] { leftover, cbuf[off] }), false);
+            off++;
+            len--;
+        }
+        encode(CharBuffer.wrap(cbuf, off, len), false);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        if (chars == null) {
+            chars = CHARS_POOL.poll();
+            if (chars == null) {
+                chars = new char[CHARS_SIZE];
+            }
+        }
+        while (len > 0) {
+            int n = Math.min(len, chars.length);
+            str.getChars(off, off + n, chars, 0);
+            write(chars, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void encode(CharBuffer cb, boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(cb, bb, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        if (cb.hasRemaining()) {
+            leftover = cb.get();
+            hasLeftover = true;
+        }
+    }
+
+    private void drain() throws IOException {
+        if (bb.position() > 0) {
+            out.write(bytes, 0, bb.position());
+            bb.clear();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (bytes == null) {
+            return;
+        }
+        try {
+            CharBuffer cb = hasLeftover ? CharBuffer.wrap(new char[] { leftover }) : CharBuffer.allocate(0);
+            hasLeftover = false;
+            encode(cb, true);
+            while (encoder.flush(bb).isOverflow()) {
+                drain();
+            }
+            drain();
+        } finally {
+            returnBuffer(bytes);
+            bytes = null;
+            bb = null;
+            if (chars != null) {
+                CHARS_POOL.offer(chars);
+                chars = null;
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (bytes == null) {
+            throw new IOException("Writer closed");
+        }
+    }
+
+    private static byte[] borrowBuffer() {
+        byte[] buffer = BUFFER_POOL.poll();
+        return (buffer == null) ? new byte[BUFFER_SIZE] : buffer;
+    }
+
+    private static void returnBuffer(byte[] buffer) {
+        BUFFER_POOL.offer(buffer);
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.io.IOException;
+import java.io.Writer;
+import jetbrick.web.mvc.Managed;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+
+/**
+ * 使用 fastjson 序列化 JsonStream 的元素.
+ */
+@Managed
+public final class FastjsonElementWriter implements JsonElementWriter {
+
+    @Override
+    public void write(Writer out, Object element) throws IOException {
+        SerializeWriter writer = new SerializeWriter();
+        try {
+            new JSONSerializer(writer).write(element);
+            writer.writeTo(out);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -20,18 +20,26 @@
 package jetbrick.web.mvc.result;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.util.Enumeration;
 import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import jetbrick.io.stream.UnsafeByteArrayOutputStream;
+import jetbrick.ioc.annotation.Config;
 import jetbrick.web.mvc.Managed;
 import jetbrick.web.mvc.RequestContext;
 import com.alibaba.fastjson.*;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
 
 @Managed({ JSONAware.class, JSONObject.class, JSONArray.class })
 public final class FastjsonResultHandler implements ResultHandler<JSONAware> {
 
+    // true: 边序列化边编码输出到 response (chunked，不设置 Content-Length)；false: 先缓存整个 body，输出 Content-Length
+    @Config(value = "web.json.streaming", defaultValue = "false")
+    private boolean streaming;
+
     @Override
     public void handle(RequestContext ctx, JSONAware result) throws IOException {
         HttpServletRequest request = ctx.getRequest();
@@ -62,12 +70,39 @@ public final class FastjsonResultHandler implements ResultHandler<JSONAware> {
         // jsonp callback
         String callback = ctx.getParameter("callback");
 
-        PrintWriter out = response.getWriter();
-        if (callback != null) {
-            out.write(callback + '(' + result.toJSONString() + ')');
+        OutputStream out = response.getOutputStream();
+        if (streaming) {
+            // SerializeWriter 的缓冲写满之后就交给 EncodingOutputWriter 编码输出 (chunked)，不需要缓存整个 body
+            write(out, characterEncoding, result, callback);
         } else {
-            out.write(result.toJSONString());
+            // 先编码到内存中，长度已知，输出 Content-Length
+            UnsafeByteArrayOutputStream buffer = new UnsafeByteArrayOutputStream(1024);
+            write(buffer, characterEncoding, result, callback);
+            response.setContentLength(buffer.size());
+            buffer.writeTo(out);
         }
         out.flush();
     }
+
+    // 通过池化的 byte[] 直接编码输出，不产生中间的 String/byte[] 副本；JSONP 的 callback 分段输出，不需要字符串拼接
+    private void write(OutputStream out, String characterEncoding, JSONAware result, String callback) throws IOException {
+        EncodingOutputWriter encoder = new EncodingOutputWriter(out, characterEncoding);
+        try {
+            if (callback != null) {
+                encoder.write(callback);
+                encoder.write('(');
+            }
+            SerializeWriter writer = new SerializeWriter(encoder);
+            try {
+                new JSONSerializer(writer).write(result);
+            } finally {
+                writer.close(); // 输出 SerializeWriter 中剩余的内容
+            }
+            if (callback != null) {
+                encoder.write(')');
+            }
+        } finally {
+            encoder.close();
+        }
+    }
 }
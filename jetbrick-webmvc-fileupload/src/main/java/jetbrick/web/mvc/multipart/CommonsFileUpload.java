@@ -25,7 +25,6 @@ import jetbrick.io.IoUtils;
 import jetbrick.web.mvc.Managed;
 import org.apache.commons.fileupload.*;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
-import org.apache.commons.fileupload.util.Streams;
 
 @Managed
 public final class CommonsFileUpload implements FileUpload {
@@ -39,42 +38,53 @@ public final class CommonsFileUpload implements FileUpload {
 
         String encoding = request.getCharacterEncoding();
 
+        UploadLimits limits = UploadLimits.get(request);
         MultipartRequest req = new MultipartRequest(request);
         ServletFileUpload upload = new ServletFileUpload();
         upload.setHeaderEncoding(encoding);
 
+        int count = 0;
+        boolean success = false;
         try {
             FileItemIterator it = upload.getItemIterator(request);
             while (it.hasNext()) {
                 FileItemStream item = it.next();
+                limits.checkPartCount(++count);
                 String fieldName = item.getFieldName();
                 InputStream stream = item.openStream();
                 try {
                     if (item.isFormField()) {
-                        req.setParameter(fieldName, Streams.asString(stream, encoding));
+                        req.setParameter(fieldName, limits.readField(stream, encoding));
                     } else {
                         String originalFilename = item.getName();
                         if (originalFilename == null || originalFilename.length() == 0) {
                             continue;
                         }
-                        File diskFile = UploadUtils.getUniqueTemporaryFile(originalFilename);
-                        OutputStream fos = new FileOutputStream(diskFile);
-
+                        FilePartOutputStream fos = UploadUtils.newFilePartOutputStream(request, fieldName, originalFilename, item.getContentType());
+                        boolean completed = false;
                         try {
                             IoUtils.copy(stream, fos);
+                            completed = true;
                         } finally {
-                            IoUtils.closeQuietly(fos);
+                            if (!completed) {
+                                fos.abort();
+                            }
                         }
 
-                        FilePart filePart = new FilePart(fieldName, originalFilename, diskFile);
+                        FilePart filePart = fos.toFilePart(fieldName);
                         req.addFile(filePart);
                     }
                 } finally {
                     IoUtils.closeQuietly(stream);
                 }
             }
+            success = true;
         } catch (FileUploadException e) {
             throw new IllegalStateException(e);
+        } finally {
+            if (!success) {
+                UploadUtils.discardFileParts(req.getFiles());
+            }
         }
 
         return req;
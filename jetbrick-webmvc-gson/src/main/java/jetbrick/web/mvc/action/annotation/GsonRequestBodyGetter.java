@@ -0,0 +1,65 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action.annotation;
+
+import java.io.*;
+import javax.servlet.http.HttpServletRequest;
+import jetbrick.bean.ParameterInfo;
+import jetbrick.ioc.annotation.Inject;
+import jetbrick.ioc.annotation.IocInit;
+import jetbrick.io.IoUtils;
+import jetbrick.web.mvc.Managed;
+import jetbrick.web.mvc.RequestContext;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * 使用 Gson 直接从 request.getInputStream() 流式读取 @RequestBody.
+ *
+ * <p>注册在 Object.class 上作为通用 getter，可以绑定任意 POJO (支持泛型参数)，以及 JsonElement/JsonObject/JsonArray.</p>
+ */
+@Managed({ Object.class, JsonElement.class })
+public final class GsonRequestBodyGetter implements RequestBodyGetter<Object> {
+
+    @Inject(required = false)
+    private Gson gson;
+
+    @IocInit
+    public void initialize() {
+        if (gson == null) {
+            gson = new Gson();
+        }
+    }
+
+    @Override
+    public Object get(RequestContext ctx, ParameterInfo parameter) throws IOException {
+        HttpServletRequest request = ctx.getRequest();
+        JsonReader reader = null;
+        try {
+            reader = new JsonReader(new InputStreamReader(request.getInputStream(), request.getCharacterEncoding()));
+            // 空的 body 返回 null
+            return gson.fromJson(reader, parameter.getGenericType());
+        } finally {
+            IoUtils.closeQuietly(reader);
+        }
+    }
+
+}
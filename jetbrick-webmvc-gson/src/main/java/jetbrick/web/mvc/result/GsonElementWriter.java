@@ -0,0 +1,54 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.io.IOException;
+import java.io.Writer;
+import jetbrick.ioc.annotation.Inject;
+import jetbrick.ioc.annotation.IocInit;
+import jetbrick.web.mvc.Managed;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+
+/**
+ * 使用 Gson 序列化 JsonStream 的元素.
+ */
+@Managed
+public final class GsonElementWriter implements JsonElementWriter {
+
+    @Inject(required = false)
+    private Gson gson;
+
+    @IocInit
+    public void initialize() {
+        if (gson == null) {
+            gson = new Gson();
+        }
+    }
+
+    @Override
+    public void write(Writer out, Object element) throws IOException {
+        try {
+            gson.toJson(element, out);
+        } catch (JsonIOException e) {
+            throw new IOException(e.getMessage(), e.getCause());
+        }
+    }
+}
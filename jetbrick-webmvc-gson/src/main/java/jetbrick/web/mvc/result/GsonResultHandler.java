@@ -30,9 +30,15 @@ import jetbrick.ioc.annotation.IocInit;
 import jetbrick.web.mvc.Managed;
 import jetbrick.web.mvc.RequestContext;
 import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
 
+/**
+ * 使用 Gson 将结果直接流式写入 response，不构建中间的 JsonElement 树，也不缓存整个字符串.
+ *
+ * <p>除 JsonElement 之外，POJO 可以通过 {@code @ManagedWith(GsonResultHandler.class)} 使用本 Handler 输出.</p>
+ */
 @Managed(JsonElement.class)
-public final class GsonResultHandler implements ResultHandler<JsonElement> {
+public final class GsonResultHandler implements ResultHandler<Object> {
 
     @Inject(required = false)
     private Gson gson;
@@ -45,29 +51,10 @@ public final class GsonResultHandler implements ResultHandler<JsonElement> {
     }
 
     @Override
-    public void handle(RequestContext ctx, JsonElement result) throws IOException {
+    public void handle(RequestContext ctx, Object result) throws IOException {
         HttpServletRequest request = ctx.getRequest();
         HttpServletResponse response = ctx.getResponse();
 
-        if (result == null) {
-            JsonObject json = new JsonObject();
-            Enumeration<String> e = request.getAttributeNames();
-
-            while (e.hasMoreElements()) {
-                String name = e.nextElement();
-                Object value = request.getAttribute(name);
-                json.add(name, gson.toJsonTree(value));
-            }
-
-            for (Map.Entry<String, Object> entry : ctx.getModel().entrySet()) {
-                String key = entry.getKey();
-                Object value = entry.getValue();
-                json.add(key, gson.toJsonTree(value));
-            }
-
-            result = json;
-        }
-
         String characterEncoding = request.getCharacterEncoding();
         response.setCharacterEncoding(characterEncoding);
 
@@ -79,10 +66,43 @@ public final class GsonResultHandler implements ResultHandler<JsonElement> {
 
         PrintWriter out = response.getWriter();
         if (callback != null) {
-            out.write(callback + '(' + result.toString() + ')');
+            out.write(callback);
+            out.write('(');
+        }
+
+        JsonWriter writer = new JsonWriter(out);
+        if (result == null) {
+            writer.beginObject();
+
+            Enumeration<String> e = request.getAttributeNames();
+            while (e.hasMoreElements()) {
+                String name = e.nextElement();
+                writeValue(writer.name(name), request.getAttribute(name));
+            }
+
+            for (Map.Entry<String, Object> entry : ctx.getModel().entrySet()) {
+                writeValue(writer.name(entry.getKey()), entry.getValue());
+            }
+
+            writer.endObject();
+        } else if (result instanceof JsonElement) {
+            gson.toJson((JsonElement) result, writer);
         } else {
-            out.write(result.toString());
+            gson.toJson(result, result.getClass(), writer);
+        }
+        writer.flush();
+
+        if (callback != null) {
+            out.write(')');
         }
         out.flush();
     }
+
+    private void writeValue(JsonWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else {
+            gson.toJson(value, value.getClass(), writer);
+        }
+    }
 }
@@ -0,0 +1,650 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.io.IOException;
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.*;
+import javax.servlet.http.HttpServletResponse;
+import jetbrick.util.ClassLoaderUtils;
+import jetbrick.util.concurrent.ConcurrentInitializer;
+import jetbrick.util.concurrent.LazyInitializer;
+import jetbrick.web.mvc.multipart.UploadLimitExceededException;
+import jetbrick.web.mvc.result.DeferredResult;
+import jetbrick.web.mvc.result.ResultHandler;
+import jetbrick.web.mvc.result.SseEmitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 使用 Servlet 3 异步请求处理 Callable/Future/DeferredResult 类型的 Action 返回值.
+ *
+ * <p>容器线程在 request.startAsync() 之后立即返回，结果在其他线程中交给对应的 ResultHandler 处理，
+ * 然后调用 AsyncContext.complete() 结束请求. 如果 DispatcherFilter 没有配置 async-supported，
+ * 将退化为在容器线程中同步等待.</p>
+ *
+ * <p>另外，标注了 &#64;AsyncDispatch 的 Action (或者设置 web.async.dispatch = true)，
+ * 整个 Interceptor + Action + ResultHandler 的处理过程都会在 executor 中执行，
+ * 这样阻塞型的 Action (比如 JDBC) 不会占用容器的线程.</p>
+ *
+ * <pre>
+ * web.async.timeout = 30000     # 异步请求的超时时间 (ms)，不包括 web.async.dispatch 中 Action 本身的执行时间
+ * web.async.executor = virtual  # virtual | platform | ExecutorService 的实现类名
+ * web.async.threads = 100       # platform 线程池的大小
+ * web.async.dispatch = false    # 是否所有的 Action 都在 executor 中执行
+ * </pre>
+ *
+ * <p>virtual 表示使用 JDK 21 的虚拟线程，在不支持虚拟线程的 JDK 上，使用有上限的 platform 线程池.</p>
+ *
+ * <p>SseEmitter 的心跳由一个单独的定时器线程发送.</p>
+ */
+public final class AsyncDispatcher {
+    public static final long DEFAULT_TIMEOUT = 30000;
+    public static final int DEFAULT_THREADS = 100;
+    public static final String EXECUTOR_VIRTUAL = "virtual";
+    public static final String EXECUTOR_PLATFORM = "platform";
+
+    private final Logger log = LoggerFactory.getLogger(AsyncDispatcher.class);
+    private final long timeout;
+    private final int threads;
+    private final String executorType;
+    private final ConcurrentInitializer<ExecutorService> executor = new LazyInitializer<ExecutorService>() {
+        @Override
+        protected ExecutorService initialize() {
+            return createExecutor();
+        }
+    };
+    private volatile boolean executorCreated;
+    private final ConcurrentInitializer<ScheduledExecutorService> scheduler = new LazyInitializer<ScheduledExecutorService>() {
+        @Override
+        protected ScheduledExecutorService initialize() {
+            return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "webmvc-heartbeat");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    };
+    private volatile boolean schedulerCreated;
+
+    public AsyncDispatcher(long timeout, int threads) {
+        this(timeout, threads, EXECUTOR_VIRTUAL);
+    }
+
+    public AsyncDispatcher(long timeout, int threads, String executorType) {
+        this.timeout = timeout;
+        this.threads = threads;
+        this.executorType = executorType;
+    }
+
+    // execute() 已经开始异步处理，但是 pipeline 还没有开始执行
+    private static final Thread PIPELINE_PENDING = new Thread("webmvc-pipeline-pending");
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * 将整个 Action 的处理过程 (Interceptor + Action + ResultHandler) 放到 executor 中执行.
+     *
+     * <p>如果 Action 返回了 Callable/Future/DeferredResult，将继续使用同一个 AsyncContext.</p>
+     *
+     * <p>pipeline 执行期间不设置超时 (和同步执行的 Action 一样)，因为这时候 pipeline 的线程还在使用 response
+     * 和 MultipartParser 等资源. 这期间的客户端断开等错误，会推迟到 pipeline 的线程退出之后再处理.</p>
+     */
+    public void execute(final RequestContext ctx, final Callable<?> pipeline) throws Exception {
+        final AsyncTask task = new AsyncTask(ctx, 0);
+        task.setPipelineThread(PIPELINE_PENDING);
+        submit(task, new Runnable() {
+            @Override
+            public void run() {
+                Throwable error = null;
+                try {
+                    task.setPipelineThread(Thread.currentThread());
+                    ctx.attach();
+                    pipeline.call();
+                } catch (Throwable e) {
+                    error = e;
+                }
+                Object[] deferred = task.setPipelineThread(null);
+                if (error != null || !task.isReused()) {
+                    task.complete(null, error);
+                } else if (deferred != null) {
+                    task.complete(deferred[0], (Throwable) deferred[1]);
+                } else {
+                    ctx.destory(); // 请求将由 Callable/Future/DeferredResult 完成
+                }
+            }
+        });
+    }
+
+    /**
+     * 在线程池中执行 Callable.
+     */
+    public void dispatch(final RequestContext ctx, final Callable<?> callable) throws Exception {
+        if (!ctx.getRequest().isAsyncSupported()) {
+            handleResult(ctx, callable.call());
+            return;
+        }
+
+        final AsyncTask task = startAsync(ctx, timeout);
+        submit(task, new Runnable() {
+            @Override
+            public void run() {
+                Object result = null;
+                Throwable error = null;
+                try {
+                    ctx.attach(); // 在 Callable 中也可以使用 RequestContext.getCurrent()
+                    result = callable.call();
+                } catch (Throwable e) {
+                    error = e;
+                }
+                task.complete(result, error);
+            }
+        });
+    }
+
+    /**
+     * 等待 Future 完成，支持 java.util.concurrent.CompletableFuture 的回调.
+     */
+    public void dispatch(RequestContext ctx, final Future<?> future) throws Exception {
+        if (future.isDone() || !ctx.getRequest().isAsyncSupported()) {
+            handleResult(ctx, getFutureResult(future, timeout));
+            return;
+        }
+
+        final AsyncTask task = startAsync(ctx, timeout);
+        if (CompletableFutureSupport.whenComplete(future, task)) {
+            return;
+        }
+
+        // 普通的 Future，只能占用一个线程来等待结果
+        submit(task, new Runnable() {
+            @Override
+            public void run() {
+                Object result = null;
+                Throwable error = null;
+                try {
+                    result = getFutureResult(future, timeout);
+                } catch (Throwable e) {
+                    error = e;
+                }
+                task.complete(result, error);
+            }
+        });
+    }
+
+    /**
+     * 等待 DeferredResult 被设置结果.
+     */
+    public void dispatch(RequestContext ctx, final DeferredResult<?> deferredResult) throws Exception {
+        long resultTimeout = deferredResult.getTimeout() > 0 ? deferredResult.getTimeout() : timeout;
+
+        if (!ctx.getRequest().isAsyncSupported()) {
+            final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<Object[]>(1);
+            deferredResult.setCallback(new DeferredResult.Callback() {
+                @Override
+                public void onResult(Object result, Throwable error) {
+                    queue.offer(new Object[] { result, error });
+                }
+            });
+            Object[] values = queue.poll(resultTimeout, TimeUnit.MILLISECONDS);
+            if (values == null) {
+                deferredResult.expire(); // 如果有 timeoutResult，会同步回调
+                values = queue.poll();
+                if (values == null) {
+                    throw new TimeoutException("Async request timeout: " + ctx.getPathInfo());
+                }
+            }
+            if (values[1] != null) {
+                throw unwrap((Throwable) values[1]);
+            }
+            handleResult(ctx, values[0]);
+            return;
+        }
+
+        final AsyncTask task = startAsync(ctx, resultTimeout);
+        task.setTimeoutCallback(new Runnable() {
+            @Override
+            public void run() {
+                // 如果有 timeoutResult，expire() 会通过回调完成请求，否则按照超时处理
+                deferredResult.expire();
+            }
+        });
+        deferredResult.setCallback(task);
+    }
+
+    /**
+     * 输出 SseEmitter 的 event，直到 complete()、超时或者客户端断开.
+     */
+    public void dispatch(RequestContext ctx, final SseEmitter emitter) throws Exception {
+        // SSE 需要立即输出，不能压缩
+        HttpServletResponse response = ResponseCompression.unwrap(ctx.getResponse());
+
+        if (!ctx.getRequest().isAsyncSupported()) {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final Throwable[] error = new Throwable[1];
+            emitter.attach(response.getOutputStream(), null, new DeferredResult.Callback() {
+                @Override
+                public void onResult(Object result, Throwable e) {
+                    error[0] = e;
+                    latch.countDown();
+                }
+            });
+
+            // 在容器线程中等待，同时负责发送心跳
+            long deadline = (emitter.getTimeout() > 0) ? System.currentTimeMillis() + emitter.getTimeout() : Long.MAX_VALUE;
+            long heartbeat = (emitter.getHeartbeat() > 0) ? emitter.getHeartbeat() : Long.MAX_VALUE;
+            while (!latch.await(Math.min(heartbeat, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                if (System.currentTimeMillis() >= deadline) {
+                    emitter.expire();
+                    break;
+                }
+                emitter.heartbeat();
+            }
+            if (error[0] != null) {
+                throw unwrap(error[0]);
+            }
+            return;
+        }
+
+        final AsyncTask task = startAsync(ctx, Math.max(emitter.getTimeout(), 0)); // 0 表示不会超时
+        task.setTimeoutCallback(new Runnable() {
+            @Override
+            public void run() {
+                emitter.expire();
+            }
+        });
+        final Future<?> heartbeat = scheduleHeartbeat(emitter);
+        task.setCompletionCallback(new Runnable() {
+            @Override
+            public void run() {
+                if (heartbeat != null) {
+                    heartbeat.cancel(false);
+                }
+                emitter.expire(); // 客户端断开等情况下，通知 SseEmitter
+            }
+        });
+
+        executorCreated = true;
+        emitter.attach(response.getOutputStream(), executor.get(), task);
+    }
+
+    private Future<?> scheduleHeartbeat(final SseEmitter emitter) {
+        long heartbeat = emitter.getHeartbeat();
+        if (heartbeat <= 0) {
+            return null;
+        }
+        schedulerCreated = true;
+        return scheduler.get().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    emitter.heartbeat();
+                } catch (RuntimeException e) {
+                    log.debug("Failed to send heartbeat", e);
+                }
+            }
+        }, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在 executor 中执行和当前请求无关的后台任务 (不会开始异步处理).
+     */
+    public void executeDetached(Runnable runnable) {
+        executorCreated = true;
+        executor.get().execute(runnable);
+    }
+
+    // 如果已经在 execute() 中开始了异步处理，那么继续使用原来的 AsyncContext
+    private AsyncTask startAsync(RequestContext ctx, long timeout) {
+        AsyncTask task = (AsyncTask) ctx.getRequest().getAttribute(AsyncTask.NAME_IN_REQUEST);
+        if (task != null && !task.isCompleted()) {
+            task.reuse(timeout);
+            return task;
+        }
+        return new AsyncTask(ctx, timeout);
+    }
+
+    private void submit(AsyncTask task, Runnable runnable) {
+        try {
+            executorCreated = true;
+            executor.get().execute(runnable);
+        } catch (RejectedExecutionException e) {
+            task.setPipelineThread(null);
+            task.complete(null, e);
+        }
+    }
+
+    private ExecutorService createExecutor() {
+        if (EXECUTOR_VIRTUAL.equals(executorType)) {
+            try {
+                // JDK 21+: Executors.newVirtualThreadPerTaskExecutor()
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                ExecutorService executor = (ExecutorService) method.invoke(null);
+                log.info("web.async.executor = virtual threads");
+                return executor;
+            } catch (NoSuchMethodException e) {
+                log.info("web.async.executor = platform threads (virtual threads are not supported), threads = {}", threads);
+            } catch (Exception e) {
+                log.warn("web.async.executor = platform threads (failed to create virtual threads executor), threads = " + threads, e);
+            }
+        } else if (!EXECUTOR_PLATFORM.equals(executorType)) {
+            try {
+                Class<?> executorClass = ClassLoaderUtils.loadClassEx(executorType);
+                return (ExecutorService) executorClass.newInstance();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to create web.async.executor: " + executorType, e);
+            }
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "webmvc-async-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 关闭线程池 (DispatcherFilter.destroy() 中调用).
+     */
+    public void shutdown() {
+        if (executorCreated) {
+            executor.get().shutdownNow();
+        }
+        if (schedulerCreated) {
+            scheduler.get().shutdownNow();
+        }
+    }
+
+    private static Object getFutureResult(Future<?> future, long timeout) throws Exception {
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    // 去掉 ExecutionException/CompletionException 的包装
+    static Exception unwrap(Throwable e) {
+        while ((e instanceof ExecutionException || "java.util.concurrent.CompletionException".equals(e.getClass().getName())) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return (e instanceof Exception) ? (Exception) e : new WebException(e);
+    }
+
+    private static void handleResult(RequestContext ctx, Object result) throws Exception {
+        if (result != null) {
+            ResultHandler<Object> handler = WebConfig.getResultHandlerResolver().lookup(result.getClass());
+            handler.handle(ctx, result);
+        }
+    }
+
+    /**
+     * 一个异步请求，结果只会被处理一次 (结果和超时可能同时发生).
+     */
+    class AsyncTask implements AsyncListener, DeferredResult.Callback {
+        static final String NAME_IN_REQUEST = "jetbrick.mvc.async.task";
+
+        private final RequestContext ctx;
+        private final AsyncContext asyncContext;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile boolean reused;
+        private volatile Runnable timeoutCallback;
+        private volatile Runnable completionCallback;
+        private Thread pipelineThread; // guarded by this
+        private Object[] deferred; // guarded by this
+
+        public AsyncTask(RequestContext ctx, long timeout) {
+            this.ctx = ctx;
+            this.asyncContext = ctx.getRequest().startAsync(ctx.getRequest(), ctx.getResponse());
+            this.asyncContext.setTimeout(timeout);
+            this.asyncContext.addListener(this);
+            ctx.getRequest().setAttribute(NAME_IN_REQUEST, this);
+        }
+
+        public boolean isCompleted() {
+            return completed.get();
+        }
+
+        public boolean isReused() {
+            return reused;
+        }
+
+        // Action 在 executor 中返回了 Callable/Future/DeferredResult
+        public void reuse(long timeout) {
+            reused = true;
+            try {
+                asyncContext.setTimeout(timeout);
+            } catch (IllegalStateException e) {
+                // 部分容器不允许在容器线程之外修改 timeout，继续使用原来的 timeout
+            }
+        }
+
+        public void setTimeoutCallback(Runnable timeoutCallback) {
+            this.timeoutCallback = timeoutCallback;
+        }
+
+        // 请求结束之后回调 (包括超时、出错等)
+        public void setCompletionCallback(Runnable completionCallback) {
+            this.completionCallback = completionCallback;
+        }
+
+        /**
+         * 设置正在执行 pipeline 的线程，pipeline 结束的时候设置为 null.
+         *
+         * @return pipeline 执行期间被推迟的结果 {result, error}，没有返回 null.
+         */
+        synchronized Object[] setPipelineThread(Thread thread) {
+            pipelineThread = thread;
+            Object[] values = deferred;
+            if (thread == null) {
+                deferred = null;
+            }
+            return values;
+        }
+
+        // pipeline 还在其他线程中执行，推迟到 pipeline 结束之后再完成请求，只保留第一个结果
+        private synchronized boolean deferIfPipelineRunning(Object result, Throwable error) {
+            if (pipelineThread == null || pipelineThread == Thread.currentThread()) {
+                return false;
+            }
+            if (deferred == null) {
+                deferred = new Object[] { result, error };
+            }
+            return true;
+        }
+
+        public void complete(Object result, Throwable error) {
+            if (deferIfPipelineRunning(result, error)) {
+                return;
+            }
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+
+            ctx.attach();
+            try {
+                if (error != null) {
+                    handleError(unwrap(error));
+                } else {
+                    handleResult(ctx, result);
+                }
+            } catch (Throwable e) {
+                handleError(e);
+            } finally {
+                ctx.destory();
+                ctx.closeResources();
+                try {
+                    ResponseCompression.finish(ctx.getResponse());
+                } catch (IOException e) {
+                    log.debug("Failed to finish compressed response", e);
+                }
+                try {
+                    asyncContext.complete();
+                } finally {
+                    Runnable callback = completionCallback;
+                    if (callback != null) {
+                        callback.run();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onResult(Object result, Throwable error) {
+            complete(result, error);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            Runnable callback = timeoutCallback;
+            if (callback != null) {
+                callback.run();
+            }
+            complete(null, new TimeoutException("Async request timeout: " + ctx.getPathInfo()));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            complete(null, event.getThrowable());
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+        }
+
+        // 和 DispatcherFilter 一样，先交给 ExceptionHandler 处理
+        private void handleError(Throwable e) {
+            Exception ex = (e instanceof Exception) ? (Exception) e : new WebException(e);
+            ctx.getRequest().setAttribute(ExceptionHandler.KEY_IN_REQUEST, ex);
+
+            ExceptionHandler exceptionHandler = WebConfig.getExceptionHandler();
+            if (exceptionHandler != null) {
+                try {
+                    exceptionHandler.handleError(ctx, ex);
+                    return;
+                } catch (Exception x) {
+                    ex = x;
+                }
+            }
+
+            HttpServletResponse response = ctx.getResponse();
+            UploadLimitExceededException limitExceeded = UploadLimitExceededException.find(ex);
+            if (limitExceeded != null) {
+                log.debug("Upload limit exceeded: {}", ctx.getPathInfo(), ex);
+                if (!response.isCommitted()) {
+                    try {
+                        // 和 DispatcherFilter 一样，请求的内容没有读取完，需要关闭连接
+                        response.setHeader("Connection", "close");
+                        response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, limitExceeded.getMessage());
+                    } catch (IOException x) {
+                        log.debug("Failed to send error", x);
+                    }
+                }
+                return;
+            }
+
+            log.error("Failed to process async request: " + ctx.getPathInfo(), ex);
+            if (!response.isCommitted()) {
+                try {
+                    int status = (ex instanceof TimeoutException) ? HttpServletResponse.SC_SERVICE_UNAVAILABLE : HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                    response.sendError(status);
+                } catch (IOException x) {
+                    log.debug("Failed to send error", x);
+                }
+            }
+        }
+    }
+
+    /**
+     * 使用反射注册 CompletableFuture.whenComplete() 回调 (项目需要兼容 JDK 6).
+     */
+    static final class CompletableFutureSupport {
+        private static final Class<?> BICONSUMER_CLASS = loadClass("java.util.function.BiConsumer");
+
+        public static boolean whenComplete(Future<?> future, final AsyncTask task) {
+            if (BICONSUMER_CLASS == null) {
+                return false;
+            }
+
+            Method method;
+            try {
+                method = future.getClass().getMethod("whenComplete", BICONSUMER_CLASS);
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+
+            Object action = Proxy.newProxyInstance(BICONSUMER_CLASS.getClassLoader(), new Class<?>[] { BICONSUMER_CLASS }, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                    if ("accept".equals(m.getName()) && args != null && args.length == 2) {
+                        task.complete(args[0], (Throwable) args[1]);
+                        return null;
+                    }
+                    if ("hashCode".equals(m.getName())) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if ("equals".equals(m.getName())) {
+                        return proxy == args[0];
+                    }
+                    if ("toString".equals(m.getName())) {
+                        return "AsyncDispatcher$whenComplete";
+                    }
+                    throw new UnsupportedOperationException(m.toString());
+                }
+            });
+
+            try {
+                method.invoke(future, action);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        private static Class<?> loadClass(String className) {
+            try {
+                return Class.forName(className);
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 有上限的对象池 (缓冲区、Deflater 等).
+ *
+ * <p>池中最多保留 maxSize 个对象，超过上限的由调用者直接丢弃或者释放，这样流量高峰之后不会一直占用内存.</p>
+ */
+public final class BoundedPool<T> {
+    private final Queue<T> queue = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxSize;
+
+    public BoundedPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 取出一个对象，池为空的时候返回 null.
+     */
+    public T poll() {
+        T object = queue.poll();
+        if (object != null) {
+            size.decrementAndGet();
+        }
+        return object;
+    }
+
+    /**
+     * 归还一个对象.
+     *
+     * @return 返回 false 表示池已满，对象没有被保留 (如果需要释放资源，由调用者负责).
+     */
+    public boolean offer(T object) {
+        if (size.incrementAndGet() > maxSize) {
+            size.decrementAndGet();
+            return false;
+        }
+        queue.offer(object);
+        return true;
+    }
+}
@@ -0,0 +1,359 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import jetbrick.io.stream.UnsafeByteArrayOutputStream;
+
+/**
+ * 将 ResultHandler 的输出缓存在内存中 (用于计算 ETag、压缩、缓存等).
+ *
+ * <p>Content-Length 被忽略，由调用者根据最终输出的内容重新设置.</p>
+ *
+ * <p>detached 模式下，没有真正的 response，status 和 headers 只记录不输出 (用于在后台刷新 ResponseCache).</p>
+ */
+public final class BufferedResponseWrapper extends HttpServletResponseWrapper {
+    private final UnsafeByteArrayOutputStream buffer = new UnsafeByteArrayOutputStream(4096);
+    private ServletOutputStream stream;
+    private PrintWriter writer;
+    private int status = SC_OK;
+    private boolean error;
+    private Map<String, List<String>> headers; // 输出过程中设置的 headers
+    private final boolean detached;
+    private String contentType; // detached 模式下使用
+
+    public BufferedResponseWrapper(HttpServletResponse response) {
+        this(response, false);
+    }
+
+    private BufferedResponseWrapper(HttpServletResponse response, boolean detached) {
+        super(response);
+        this.detached = detached;
+    }
+
+    /**
+     * 创建 detached 模式的 buffer，只复制 response 的 characterEncoding 和 locale，不再引用原来的 response.
+     */
+    public static BufferedResponseWrapper detached(HttpServletResponse response) {
+        final String characterEncoding = response.getCharacterEncoding();
+        final Locale locale = response.getLocale();
+        HttpServletResponse detachedResponse = (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(), new Class<?>[] { HttpServletResponse.class }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (method.getDeclaringClass() == Object.class) {
+                    if ("equals".equals(name)) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(name)) {
+                        return System.identityHashCode(proxy);
+                    }
+                    return "DetachedResponse";
+                }
+                if ("getCharacterEncoding".equals(name)) {
+                    return characterEncoding;
+                }
+                if ("getLocale".equals(name)) {
+                    return locale;
+                }
+                if (name.startsWith("encode")) {
+                    return args[0]; // encodeURL(), encodeRedirectURL() ...
+                }
+                if ("containsHeader".equals(name) || "isCommitted".equals(name)) {
+                    return Boolean.FALSE;
+                }
+                if (method.getReturnType() == void.class) {
+                    return null; // setLocale(), setBufferSize() ...
+                }
+                throw new IllegalStateException("Unsupported in detached response: " + name);
+            }
+        });
+        return new BufferedResponseWrapper(detachedResponse, true);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (stream == null) {
+            stream = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    buffer.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    buffer.write(b, off, len);
+                }
+            };
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (stream != null) {
+            throw new IllegalStateException("getOutputStream() has already been called");
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(buffer, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+    }
+
+    @Override
+    public void setContentType(String type) {
+        if (detached) {
+            contentType = type;
+        } else {
+            super.setContentType(type);
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return detached ? contentType : super.getContentType();
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        if (detached && contentType != null) {
+            int index = contentType.toLowerCase().indexOf("charset=");
+            if (index >= 0) {
+                return contentType.substring(index + 8).trim();
+            }
+        }
+        return super.getCharacterEncoding();
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (!"Content-Length".equalsIgnoreCase(name)) {
+            if (!detached) {
+                super.setHeader(name, value);
+            }
+            recordHeader(name, value, false);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (!"Content-Length".equalsIgnoreCase(name)) {
+            if (!detached) {
+                super.addHeader(name, value);
+            }
+            recordHeader(name, value, true);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (!"Content-Length".equalsIgnoreCase(name)) {
+            if (!detached) {
+                super.setIntHeader(name, value);
+            }
+            recordHeader(name, String.valueOf(value), false);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (!"Content-Length".equalsIgnoreCase(name)) {
+            if (!detached) {
+                super.addIntHeader(name, value);
+            }
+            recordHeader(name, String.valueOf(value), true);
+        }
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        if (!detached) {
+            super.setDateHeader(name, date);
+        }
+        recordHeader(name, formatDate(date), false);
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        if (!detached) {
+            super.addDateHeader(name, date);
+        }
+        recordHeader(name, formatDate(date), true);
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        if (!detached) {
+            super.addCookie(cookie);
+        }
+        recordHeader("Set-Cookie", cookie.getName() + "=" + cookie.getValue(), true);
+    }
+
+    private void recordHeader(String name, String value, boolean add) {
+        if (headers == null) {
+            headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+        }
+        List<String> values = headers.get(name);
+        if (values == null) {
+            values = new ArrayList<String>(2);
+            headers.put(name, values);
+        } else if (!add) {
+            values.clear();
+        }
+        values.add(value);
+    }
+
+    private static String formatDate(long date) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(date));
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        status = sc;
+        if (!detached) {
+            super.setStatus(sc);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+        status = sc;
+        if (!detached) {
+            super.setStatus(sc, sm);
+        }
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        status = sc;
+        error = true;
+        if (!detached) {
+            super.sendError(sc);
+        }
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        status = sc;
+        error = true;
+        if (!detached) {
+            super.sendError(sc, msg);
+        }
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        status = SC_MOVED_TEMPORARILY;
+        error = true;
+        if (!detached) {
+            super.sendRedirect(location);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        // 不能提交真正的 response
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (!detached) {
+            super.resetBuffer();
+        }
+        buffer.reset();
+    }
+
+    @Override
+    public void reset() {
+        if (!detached) {
+            super.reset();
+        }
+        buffer.reset();
+        status = SC_OK;
+        headers = null;
+        contentType = null;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return detached ? error : super.isCommitted();
+    }
+
+    // 已经调用了 sendError()/sendRedirect()，真正的 response 已经提交
+    public boolean isCommittedByError() {
+        return error;
+    }
+
+    // 返回输出过程中设置的 headers (不包含 Content-Type 和 Content-Length)
+    public Map<String, List<String>> getHeaderMap() {
+        if (headers == null) {
+            return Collections.emptyMap();
+        }
+        return headers;
+    }
+
+    public int size() {
+        flushWriter();
+        return buffer.size();
+    }
+
+    // 返回缓存的内容 (没有复制)
+    public ByteBuffer toByteBuffer() {
+        flushWriter();
+        return buffer.toByteBuffer();
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        flushWriter();
+        buffer.writeTo(out);
+    }
+
+    private void flushWriter() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 已经输出完成的 response (status + headers + body)，可以被多个请求重复输出.
+ *
+ * @see ResponseCache
+ */
+public final class CachedResponse {
+    private final int status;
+    private final String contentType;
+    private final String[] headers; // name, value, name, value, ...
+    private final byte[] body;
+    private final long created;
+    private final long expires;
+    private final long staleExpires; // 过期之后，在此之前仍然可以使用 (stale-while-revalidate)
+    private final int size;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+
+    /**
+     * 从 BufferedResponseWrapper 中创建，不可以缓存的输出返回 null (非 200，已经 sendError，包含 Set-Cookie).
+     */
+    public static CachedResponse create(BufferedResponseWrapper response, long ttlMillis) {
+        return create(response, ttlMillis, 0);
+    }
+
+    /**
+     * 过期之后的 staleMillis 时间内，仍然可以使用旧的内容，同时在后台刷新.
+     */
+    public static CachedResponse create(BufferedResponseWrapper response, long ttlMillis, long staleMillis) {
+        if (response.isCommittedByError() || response.getStatus() != HttpServletResponse.SC_OK) {
+            return null;
+        }
+        Map<String, List<String>> headerMap = response.getHeaderMap();
+        if (headerMap.containsKey("Set-Cookie")) {
+            return null;
+        }
+
+        int count = 0;
+        for (List<String> values : headerMap.values()) {
+            count += values.size();
+        }
+        String[] headers = new String[count << 1];
+        int i = 0;
+        for (Map.Entry<String, List<String>> entry : headerMap.entrySet()) {
+            for (String value : entry.getValue()) {
+                headers[i++] = entry.getKey();
+                headers[i++] = value;
+            }
+        }
+
+        ByteBuffer buffer = response.toByteBuffer();
+        byte[] body = new byte[buffer.remaining()];
+        buffer.get(body);
+
+        long now = System.currentTimeMillis();
+        return new CachedResponse(response.getStatus(), response.getContentType(), headers, body, now, now + ttlMillis, now + ttlMillis + staleMillis);
+    }
+
+    private CachedResponse(int status, String contentType, String[] headers, byte[] body, long created, long expires, long staleExpires) {
+        this.status = status;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.body = body;
+        this.created = created;
+        this.expires = expires;
+        this.staleExpires = staleExpires;
+        // 估算占用的内存 (char 按照 2 个字节计算)
+        int size = body.length + 64;
+        for (String header : headers) {
+            size += header.length() << 1;
+        }
+        if (contentType != null) {
+            size += contentType.length() << 1;
+        }
+        this.size = size;
+    }
+
+    public void writeTo(HttpServletResponse response) throws IOException {
+        response.setStatus(status);
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        String lastName = null;
+        for (int i = 0; i < headers.length; i += 2) {
+            String name = headers[i];
+            if (name.equals(lastName)) {
+                response.addHeader(name, headers[i + 1]);
+            } else {
+                response.setHeader(name, headers[i + 1]);
+                lastName = name;
+            }
+        }
+        response.setContentLength(body.length);
+
+        OutputStream out = response.getOutputStream();
+        out.write(body);
+        out.flush();
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getExpires() {
+        return expires;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expires;
+    }
+
+    // 过期之后，超过了 stale-while-revalidate 的时间，不能再使用
+    public boolean isStaleExpired(long now) {
+        return now >= staleExpires;
+    }
+
+    // 已经过期的内容，只允许一个请求去刷新，返回 false 表示已经有请求正在刷新
+    public boolean tryRevalidate() {
+        return revalidating.compareAndSet(false, true);
+    }
+
+    // 刷新失败的话，允许其他请求再次刷新
+    public void endRevalidate() {
+        revalidating.set(false);
+    }
+
+    // 估算占用的内存大小 (bytes)
+    public int getSize() {
+        return size;
+    }
+}
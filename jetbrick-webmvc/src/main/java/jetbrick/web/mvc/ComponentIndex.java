@@ -0,0 +1,250 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import jetbrick.io.IoUtils;
+import jetbrick.util.ClassLoaderUtils;
+import jetbrick.util.StringUtils;
+import jetbrick.web.mvc.action.HttpMethod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 编译期生成的 Component 索引 (由 jetbrick-webmvc-apt 生成).
+ *
+ * <p>存在索引文件时，启动阶段不再需要扫描 classpath，也不需要通过反射查找 Controller 中的 Action.</p>
+ *
+ * <p>索引文件可能来自第三方的 jar，或者是没有使用 annotation processor 编译时遗留的旧文件，
+ * 所以只有 web.scan.packages 被索引中的 package 覆盖时才使用索引，其他的 package 仍然需要扫描 classpath.</p>
+ */
+public final class ComponentIndex {
+    public static final String INDEX_FILE = "META-INF/jetbrick-webmvc.index";
+    private static final Logger log = LoggerFactory.getLogger(ComponentIndex.class);
+
+    private final Map<String, List<Class<?>>> classesMap = new HashMap<String, List<Class<?>>>();
+    private final Map<Class<?>, List<IndexedAction>> actionsMap = new HashMap<Class<?>, List<IndexedAction>>();
+    private final List<String> coveredPackages = new ArrayList<String>();
+    private final List<String> uncoveredPackages = new ArrayList<String>();
+
+    /**
+     * 加载 classpath 中所有的索引文件，只保留被索引覆盖的 packageNames 中的 class.
+     *
+     * @return 如果没有找到任何索引文件，或者 packageNames 都没有被索引覆盖，返回 null.
+     */
+    public static ComponentIndex load(Collection<String> packageNames) {
+        ClassLoader loader = ClassLoaderUtils.getDefault();
+        Enumeration<URL> files = null;
+        try {
+            files = loader.getResources(INDEX_FILE);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        if (!files.hasMoreElements()) {
+            return null;
+        }
+
+        List<String[]> records = new ArrayList<String[]>(256);
+        Set<String> indexedPackages = new HashSet<String>();
+        while (files.hasMoreElements()) {
+            URL url = files.nextElement();
+            log.debug("found {} at: {}", INDEX_FILE, url);
+
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(url.openStream(), "utf-8"));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = StringUtils.trimToNull(line);
+                    if (line != null && line.charAt(0) != '#') {
+                        String[] values = StringUtils.split(line, '\t');
+                        if ("package".equals(values[0])) {
+                            indexedPackages.add(values[1]);
+                        } else {
+                            records.add(values);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                IoUtils.closeQuietly(reader);
+            }
+        }
+
+        ComponentIndex index = new ComponentIndex();
+        for (String packageName : packageNames) {
+            if (isCovered(packageName, indexedPackages)) {
+                index.coveredPackages.add(packageName);
+            } else {
+                index.uncoveredPackages.add(packageName);
+            }
+        }
+        if (index.coveredPackages.isEmpty()) {
+            log.warn("{} does not cover any package in web.scan.packages, ignored.", INDEX_FILE);
+            return null;
+        }
+        for (String[] values : records) {
+            index.addRecord(values, index.coveredPackages, loader);
+        }
+        return index;
+    }
+
+    // 索引中包含这个 package (或者它的子 package) 的时候，认为已经被索引覆盖
+    private static boolean isCovered(String packageName, Set<String> indexedPackages) {
+        for (String indexed : indexedPackages) {
+            if (indexed.equals(packageName) || isInPackages(indexed, Collections.singleton(packageName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 被索引覆盖的 package (从索引中加载).
+     */
+    public List<String> getCoveredPackages() {
+        return coveredPackages;
+    }
+
+    /**
+     * 没有被索引覆盖的 package (需要扫描 classpath).
+     */
+    public List<String> getUncoveredPackages() {
+        return uncoveredPackages;
+    }
+
+    private void addRecord(String[] values, Collection<String> packageNames, ClassLoader loader) {
+        if ("annotation".equals(values[0])) {
+            if (isInPackages(values[2], packageNames)) {
+                List<Class<?>> classes = classesMap.get(values[1]);
+                if (classes == null) {
+                    classes = new ArrayList<Class<?>>(32);
+                    classesMap.put(values[1], classes);
+                }
+                classes.add(loadClass(values[2], loader));
+            }
+        } else if ("action".equals(values[0])) {
+            if (isInPackages(values[1], packageNames)) {
+                Class<?> controller = loadClass(values[1], loader);
+                List<IndexedAction> actions = actionsMap.get(controller);
+                if (actions == null) {
+                    actions = new ArrayList<IndexedAction>(16);
+                    actionsMap.put(controller, actions);
+                }
+                actions.add(new IndexedAction(values, loader));
+            }
+        } else {
+            throw new IllegalStateException("Unsupported record in " + INDEX_FILE + ": " + values[0]);
+        }
+    }
+
+    // 和 ClassFinder 一样，包含子 package
+    private static boolean isInPackages(String className, Collection<String> packageNames) {
+        for (String packageName : packageNames) {
+            if (className.startsWith(packageName) && className.length() > packageName.length() && className.charAt(packageName.length()) == '.') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Class<?> loadClass(String className, ClassLoader loader) {
+        try {
+            return ClassLoaderUtils.loadClassEx(className, loader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Class not found in " + INDEX_FILE + ", please rebuild the project: " + className, e);
+        }
+    }
+
+    /**
+     * 获取标注了某个 Annotation 的所有 class.
+     */
+    public List<Class<?>> getClasses(String annotationName) {
+        List<Class<?>> classes = classesMap.get(annotationName);
+        return (classes == null) ? Collections.<Class<?>> emptyList() : classes;
+    }
+
+    /**
+     * 判断 class 是否在被索引覆盖的 package 中.
+     */
+    public boolean isIndexed(Class<?> cls) {
+        return isInPackages(cls.getName(), coveredPackages);
+    }
+
+    /**
+     * 获取 Controller 中所有的 Action.
+     */
+    public List<IndexedAction> getActions(Class<?> controller) {
+        List<IndexedAction> actions = actionsMap.get(controller);
+        return (actions == null) ? Collections.<IndexedAction> emptyList() : actions;
+    }
+
+    /**
+     * 一个 Action 的索引信息 (URL 已经在编译期计算完毕).
+     */
+    public static final class IndexedAction {
+        private final String methodName;
+        private final Class<?>[] parameterTypes;
+        private final HttpMethod[] httpMethods;
+        private final String url;
+
+        // action {controller} {methodName} {parameterTypes} {httpMethods} {url}
+        IndexedAction(String[] values, ClassLoader loader) {
+            this.methodName = values[2];
+
+            String[] typeNames = StringUtils.split(values[3], ',');
+            if (values[3].length() == 0) {
+                typeNames = new String[0];
+            }
+            this.parameterTypes = new Class<?>[typeNames.length];
+            for (int i = 0; i < typeNames.length; i++) {
+                parameterTypes[i] = loadClass(typeNames[i], loader);
+            }
+
+            String[] methodNames = StringUtils.split(values[4], ',');
+            this.httpMethods = new HttpMethod[methodNames.length];
+            for (int i = 0; i < methodNames.length; i++) {
+                httpMethods[i] = HttpMethod.valueOf(methodNames[i]);
+            }
+
+            this.url = values[5];
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        public Class<?>[] getParameterTypes() {
+            return parameterTypes;
+        }
+
+        public HttpMethod[] getHttpMethods() {
+            return httpMethods;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+    }
+}
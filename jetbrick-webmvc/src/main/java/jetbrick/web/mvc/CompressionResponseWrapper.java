@@ -0,0 +1,323 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.io.*;
+import java.util.zip.*;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * 压缩输出的 response.
+ *
+ * <p>先缓存 minSize 个字节，超过 minSize 并且 Content-Type 允许压缩的情况下才进行压缩，否则直接输出.</p>
+ *
+ * <p>压缩之后的内容和原始内容不能使用相同的强 ETag (If-Range 会匹配到错误的版本)，所以压缩的时候改为弱 ETag.</p>
+ */
+final class CompressionResponseWrapper extends HttpServletResponseWrapper {
+    private final ResponseCompression compression;
+    private final String encoding; // null 表示客户端不支持压缩
+    private long contentLength = -1;
+    private boolean encoded; // 已经设置了 Content-Encoding (如：预先压缩的 .gz 文件)
+    private boolean bypassed; // 直接使用原始的 response 输出
+    private CompressionOutputStream stream;
+    private PrintWriter writer;
+
+    public CompressionResponseWrapper(HttpServletResponse response, ResponseCompression compression, String encoding) {
+        super(response);
+        this.compression = compression;
+        this.encoding = encoding;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len; // 延迟到确定是否压缩之后
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            contentLength = Long.parseLong(value);
+            return;
+        }
+        if ("Content-Encoding".equalsIgnoreCase(name)) {
+            encoded = true;
+        }
+        super.setHeader(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            contentLength = Long.parseLong(value);
+            return;
+        }
+        if ("Content-Encoding".equalsIgnoreCase(name)) {
+            encoded = true;
+        }
+        super.addHeader(name, value);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        return getCompressionOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(getCompressionOutputStream(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    private CompressionOutputStream getCompressionOutputStream() {
+        if (stream == null) {
+            stream = new CompressionOutputStream(compression.getMinSize());
+        }
+        return stream;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (stream != null) {
+            stream.resetBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        contentLength = -1;
+        encoded = false;
+        if (stream != null) {
+            stream.resetBuffer();
+        }
+    }
+
+    // 确定不需要压缩的话，返回原始的 response，否则返回 null
+    HttpServletResponse bypass() {
+        if (bypassed) {
+            return (HttpServletResponse) getResponse();
+        }
+        if (stream != null || writer != null) {
+            return null;
+        }
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        boolean compressible = !encoded && compression.isCompressible(response.getContentType());
+        if (compressible && encoding != null && response.getStatus() == SC_OK) {
+            return null;
+        }
+        if (compressible) {
+            ResponseCompression.addVary(response);
+        }
+        if (contentLength >= 0) {
+            applyContentLength(contentLength);
+        }
+        bypassed = true;
+        return response;
+    }
+
+    // 请求结束
+    public void finish() throws IOException {
+        if (bypassed) {
+            return;
+        }
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.finish();
+        } else {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            if (response.getStatus() == SC_NOT_MODIFIED && encoding != null && !encoded && compression.isCompressible(response.getContentType())) {
+                weakenETag(response); // 和压缩输出的 200 使用相同的 ETag
+            }
+            if (contentLength >= 0) {
+                applyContentLength(contentLength);
+            }
+        }
+    }
+
+    private static void weakenETag(HttpServletResponse response) {
+        String etag = response.getHeader("ETag");
+        if (etag != null && etag.startsWith("\"")) {
+            response.setHeader("ETag", "W/" + etag);
+        }
+    }
+
+    private void applyContentLength(long length) {
+        if (length <= Integer.MAX_VALUE) {
+            super.setContentLength((int) length);
+        } else {
+            super.setHeader("Content-Length", Long.toString(length));
+        }
+    }
+
+    final class CompressionOutputStream extends ServletOutputStream {
+        private byte[] buffer;
+        private int count;
+        private OutputStream out; // null 表示还没有决定是否压缩
+        private Deflater deflater;
+        private DeflaterOutputStream deflaterStream;
+
+        CompressionOutputStream(int minSize) {
+            this.buffer = new byte[Math.max(minSize, 1)];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (out == null) {
+                if (count < buffer.length) {
+                    buffer[count++] = (byte) b;
+                    return;
+                }
+                decide(true);
+            }
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out == null) {
+                if (count + len <= buffer.length) {
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                    return;
+                }
+                decide(true);
+            }
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // 主动 flush 的时候还没有超过 minSize，不再压缩 (如：SSE 需要立即输出)
+            if (out == null) {
+                decide(false);
+            }
+            out.flush();
+        }
+
+        void resetBuffer() {
+            if (out == null) {
+                count = 0;
+            }
+        }
+
+        void finish() throws IOException {
+            if (out == null) {
+                if (contentLength < 0) {
+                    contentLength = count;
+                }
+                decide(false);
+            }
+            if (deflaterStream != null) {
+                try {
+                    deflaterStream.finish();
+                } finally {
+                    compression.release(deflater, deflaterStream instanceof GzipOutputStream);
+                    deflaterStream = null;
+                }
+            }
+            out.flush();
+        }
+
+        private void decide(boolean large) throws IOException {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            boolean compressible = !encoded && compression.isCompressible(response.getContentType());
+            if (compressible) {
+                ResponseCompression.addVary(response);
+            }
+
+            OutputStream os = response.getOutputStream();
+            if (large && compressible && encoding != null && response.getStatus() == SC_OK && (contentLength < 0 || contentLength >= buffer.length)) {
+                response.setHeader("Content-Encoding", encoding);
+                weakenETag(response);
+                boolean gzip = "gzip".equals(encoding);
+                deflater = compression.borrowDeflater(gzip);
+                deflaterStream = gzip ? new GzipOutputStream(os, deflater) : new DeflaterOutputStream(os, deflater, 8192);
+                out = deflaterStream;
+            } else {
+                if (contentLength >= 0) {
+                    applyContentLength(contentLength);
+                }
+                out = os;
+            }
+
+            if (count > 0) {
+                out.write(buffer, 0, count);
+            }
+            buffer = null;
+        }
+    }
+
+    /**
+     * 使用外部的 Deflater (可以复用) 的 gzip 输出流，JDK 的 GZIPOutputStream 不能指定 Deflater.
+     */
+    static final class GzipOutputStream extends DeflaterOutputStream {
+        private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+        private final CRC32 crc = new CRC32();
+
+        GzipOutputStream(OutputStream out, Deflater deflater) throws IOException {
+            super(out, deflater, 8192);
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            crc.update(b, off, len);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            super.finish();
+            writeInt((int) crc.getValue());
+            writeInt((int) def.getBytesRead());
+        }
+
+        private void writeInt(int i) throws IOException {
+            out.write(i & 0xff);
+            out.write((i >> 8) & 0xff);
+            out.write((i >> 16) & 0xff);
+            out.write((i >> 24) & 0xff);
+        }
+    }
+}
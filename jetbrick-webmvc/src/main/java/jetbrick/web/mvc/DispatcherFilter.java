@@ -20,15 +20,22 @@
 package jetbrick.web.mvc;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import jetbrick.util.JdkUtils;
+import jetbrick.web.mvc.action.ActionInfo;
+import jetbrick.web.mvc.action.Cacheable;
+import jetbrick.web.mvc.action.Coalesced;
+import jetbrick.web.mvc.action.ConditionalValidator;
 import jetbrick.web.mvc.action.HttpMethod;
 import jetbrick.web.mvc.interceptor.Interceptor;
 import jetbrick.web.mvc.interceptor.InterceptorChainImpl;
 import jetbrick.web.mvc.multipart.FileUploadResolver;
+import jetbrick.web.mvc.multipart.UploadLimitExceededException;
 import jetbrick.web.mvc.plugin.Plugin;
+import jetbrick.web.mvc.result.ConditionalUtils;
 import jetbrick.web.mvc.result.ResultHandler;
 import jetbrick.web.servlet.RequestUtils;
 import jetbrick.web.servlet.ResponseUtils;
@@ -43,9 +50,13 @@ public final class DispatcherFilter implements Filter {
     private Router router;
     private BypassRequestUrls bypassRequestUrls;
     private CORSRequestProcessor corsRequestProcessor;
+    private ResponseCompression responseCompression;
+    private ResponseCache responseCache;
+    private SingleFlight<CachedResponse> singleFlight;
     private ResultHandlerResolver resultHandlerResolver;
     private FileUploadResolver fileUploadResolver;
     private ExceptionHandler exceptionHandler;
+    private AsyncDispatcher asyncDispatcher;
 
     @Override
     public void init(FilterConfig fc) throws ServletException {
@@ -69,16 +80,29 @@ public final class DispatcherFilter implements Filter {
             router = WebConfig.getRouter();
             bypassRequestUrls = WebConfig.getBypassRequestUrls();
             corsRequestProcessor = WebConfig.getCORSRequestProcessor();
+            responseCompression = WebConfig.getResponseCompression();
+            responseCache = WebConfig.getResponseCache();
+            singleFlight = new SingleFlight<CachedResponse>(responseCache.getWaitTimeout());
             resultHandlerResolver = WebConfig.getResultHandlerResolver();
             fileUploadResolver = WebConfig.getFileUploadResolver();
             exceptionHandler = WebConfig.getExceptionHandler();
+            asyncDispatcher = WebConfig.getAsyncDispatcher();
 
             log.info("web.root = {}", WebConfig.getWebroot());
             log.info("web.development = {}", WebConfig.isDevelopment());
             log.info("web.upload.dir = {}", WebConfig.getUploaddir());
+            log.info("web.upload.threshold = {}", WebConfig.getUploadThreshold());
+            log.info("web.upload.memory.size = {}", WebConfig.getUploadMemorySize());
+            log.info("web.upload.max = {}", WebConfig.getUploadLimits());
             log.info("web.urls.router = {}", router.getClass().getName());
             log.info("web.urls.bypass = {}", (bypassRequestUrls == null) ? null : bypassRequestUrls.getClass().getName());
             log.info("web.urls.cors = {}", (corsRequestProcessor == null) ? null : corsRequestProcessor.getClass().getName());
+            log.info("web.http.compression = {}", responseCompression != null);
+            log.info("web.cache.size = {}", responseCache.getMaxSize());
+            log.info("web.cache.wait.timeout = {}", responseCache.getWaitTimeout());
+            log.info("web.async.timeout = {}", asyncDispatcher.getTimeout());
+            log.info("web.async.dispatch = {}", WebConfig.isAsyncDispatch());
+            log.info("web.jaxb.prewarm = {}, JAXBContext created: {}", WebConfig.isJaxbPrewarm(), JAXBContextCache.getContextCreatedCount());
 
             for (Plugin plugin : WebConfig.getPlugins()) {
                 log.info("load plugin: {}", plugin.getClass().getName());
@@ -131,7 +155,13 @@ public final class DispatcherFilter implements Filter {
         }
 
         RouteInfo route = router.lookup(request, path, httpMethod);
-        request = fileUploadResolver.transform(request);
+        if (route != null && route != RouteInfo.NOT_FOUND && !route.getAction().isStreamingUpload()) {
+            // 延迟解析：第一次访问参数或者 FilePart 的时候才读取上传的内容
+            request = fileUploadResolver.transform(request, route.getAction().getUploadLimits(), route.getAction().getPartConsumers());
+        }
+        if (responseCompression != null) {
+            response = responseCompression.wrap(request, response);
+        }
         RequestContext ctx = new RequestContext(request, response, path, httpMethod, route);
 
         try {
@@ -139,13 +169,31 @@ public final class DispatcherFilter implements Filter {
                 throw new ActionNotFoundException(path);
             }
 
-            InterceptorChainImpl interceptorChain = new InterceptorChainImpl(WebConfig.getInterceptors(), ctx);
-            interceptorChain.invoke();
+            // 上传请求：根据 Content-Length 提前拒绝，不需要读取请求的内容
+            if (fileUploadResolver.isMultipart(request)) {
+                route.getAction().getUploadLimits().checkContentLength(request);
+            }
 
-            ResultInfo result = interceptorChain.getResult();
-            if (result != null) {
-                ResultHandler<Object> handler = resultHandlerResolver.lookup(result.getResultClass());
-                handler.handle(ctx, result.getResultObject());
+            Cacheable cacheable = route.getAction().getCacheable();
+            Coalesced coalesced = route.getAction().getCoalesced();
+            if (cacheable != null && httpMethod == HttpMethod.GET) {
+                // 服务器端缓存：命中的话，只需要执行 Interceptor，不需要执行 Action
+                processCacheable(ctx, cacheable);
+            } else if (coalesced != null && httpMethod == HttpMethod.GET) {
+                // single-flight：合并相同的并发请求
+                processSingleFlight(ctx, ResponseCache.createKey(ctx, coalesced.params(), coalesced.headers()), null);
+            } else if (route.getAction().isAsyncDispatch() && request.isAsyncSupported()) {
+                // 在 web.async.executor 中执行，容器线程直接返回
+                final RequestContext asyncCtx = ctx;
+                asyncDispatcher.execute(ctx, new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        processAction(asyncCtx);
+                        return null;
+                    }
+                });
+            } else {
+                processAction(ctx);
             }
         } catch (Exception e) {
             handleError(ctx, e);
@@ -153,9 +201,161 @@ public final class DispatcherFilter implements Filter {
             if (ctx != null) {
                 ctx.destory();
             }
+            if (!request.isAsyncStarted()) {
+                if (ctx != null) {
+                    ctx.closeResources();
+                }
+                ResponseCompression.finish(response);
+            }
+        }
+    }
+
+    // 执行 Interceptor + Action + ResultHandler，返回 false 表示被 Interceptor 拦截，没有执行 Action
+    private boolean processAction(RequestContext ctx) throws Exception {
+        // 没有 Interceptor 的情况下，直接执行 Action，不需要创建 InterceptorChain
+        ActionInfo action = ctx.getRouteInfo().getAction();
+        Interceptor[] interceptors = action.getInterceptors();
+        ResultInfo result;
+        if (interceptors.length == 0) {
+            result = action.execute(ctx);
+        } else {
+            InterceptorChainImpl interceptorChain = new InterceptorChainImpl(interceptors, ctx);
+            interceptorChain.invoke();
+            if (!interceptorChain.isCompleted()) {
+                return false;
+            }
+            result = interceptorChain.getResult();
+        }
+
+        if (result != null) {
+            ResultHandler<Object> handler = resultHandlerResolver.lookup(result.getResultClass());
+            handler.handle(ctx, result.getResultObject());
+        }
+        return true;
+    }
+
+    // 使用 ResponseCache 缓存输出，相同 key 的并发请求只执行一次 Action
+    private void processCacheable(final RequestContext ctx, final Cacheable cacheable) throws Exception {
+        String key = ResponseCache.createKey(ctx, cacheable);
+        CachedResponse cached = responseCache.get(key);
+        if (cached == null) {
+            processSingleFlight(ctx, key, cacheable);
+            return;
+        }
+        if (!checkInterceptors(ctx) || checkNotModified(ctx)) {
+            return;
+        }
+
+        cached.writeTo(ctx.getResponse());
+
+        // stale-while-revalidate：已经输出了旧的内容，只有一个请求去刷新缓存
+        if (cached.isExpired(System.currentTimeMillis()) && cached.tryRevalidate()) {
+            try {
+                revalidate(ctx, key, cacheable, cached);
+            } catch (RuntimeException e) {
+                // 旧的内容已经输出，不影响当前请求
+                cached.endRevalidate();
+                log.warn("Failed to revalidate cached response: " + ctx.getPathInfo(), e);
+            }
         }
     }
 
+    // 在后台重新执行 Action，更新 ResponseCache
+    // 当前请求 (已经输出了旧的内容) 直接完成，后台任务使用 request 的快照，不再使用当前的 request/response
+    private void revalidate(final RequestContext ctx, final String key, final Cacheable cacheable, final CachedResponse stale) {
+        final HttpServletRequest request = new DetachedRequestWrapper(ctx.getRequest());
+        final BufferedResponseWrapper buffer = BufferedResponseWrapper.detached(ctx.getResponse());
+        final String path = ctx.getPathInfo();
+        final HttpMethod httpMethod = ctx.getHttpMethod();
+        final RouteInfo route = ctx.getRouteInfo();
+        asyncDispatcher.executeDetached(new Runnable() {
+            @Override
+            public void run() {
+                RequestContext detachedCtx = new RequestContext(request, buffer, path, httpMethod, route);
+                try {
+                    if (render(detachedCtx, buffer, key, cacheable) == null) {
+                        stale.endRevalidate();
+                    }
+                } catch (Throwable e) {
+                    stale.endRevalidate();
+                    log.warn("Failed to revalidate cached response: " + path, e);
+                } finally {
+                    detachedCtx.destory();
+                }
+            }
+        });
+    }
+
+    // 相同 key 的并发请求只执行一次 Action，其他请求共享输出的结果
+    private void processSingleFlight(final RequestContext ctx, final String key, final Cacheable cacheable) throws Exception {
+        final BufferedResponseWrapper[] executed = new BufferedResponseWrapper[1];
+        CachedResponse shared = singleFlight.execute(key, new Callable<CachedResponse>() {
+            @Override
+            public CachedResponse call() throws Exception {
+                BufferedResponseWrapper buffer = new BufferedResponseWrapper(ctx.getResponse());
+                executed[0] = buffer;
+                return render(ctx, buffer, key, cacheable);
+            }
+        });
+
+        HttpServletResponse response = ctx.getResponse();
+        BufferedResponseWrapper buffer = executed[0];
+        if (buffer != null) {
+            // 当前请求执行了 Action，status 和 headers 已经输出
+            if (!buffer.isCommittedByError()) {
+                response.setContentLength(buffer.size());
+                buffer.writeTo(response.getOutputStream());
+            }
+        } else if (shared != null) {
+            if (checkInterceptors(ctx) && !checkNotModified(ctx)) {
+                shared.writeTo(response);
+            }
+        } else {
+            // 其他请求的结果不能共享 (非 200 等)，只能自己执行
+            processAction(ctx);
+        }
+    }
+
+    // 输出缓存/共享的内容之前，当前请求也需要通过所有的 Interceptor (权限检查等)
+    private boolean checkInterceptors(RequestContext ctx) throws Exception {
+        Interceptor[] interceptors = ctx.getRouteInfo().getAction().getInterceptors();
+        if (interceptors.length == 0) {
+            return true;
+        }
+        InterceptorChainImpl interceptorChain = new InterceptorChainImpl(interceptors, ctx, false);
+        interceptorChain.invoke();
+        return interceptorChain.isCompleted();
+    }
+
+    // 输出缓存/共享的内容之前，和 ActionInfo.execute() 一样检查 @Conditional
+    private boolean checkNotModified(RequestContext ctx) {
+        ConditionalValidator validator = ctx.getRouteInfo().getAction().getConditionalValidator();
+        return validator != null && ConditionalUtils.checkNotModified(ctx, validator);
+    }
+
+    // 将 Action 的输出保存在 buffer 中，返回 null 表示输出不能被缓存/共享
+    private CachedResponse render(RequestContext ctx, BufferedResponseWrapper buffer, String key, Cacheable cacheable) throws Exception {
+        RequestContext bufferedCtx = new RequestContext(ctx.getRequest(), buffer, ctx.getPathInfo(), ctx.getHttpMethod(), ctx.getRouteInfo());
+        boolean executed;
+        try {
+            executed = processAction(bufferedCtx);
+        } finally {
+            ctx.attach(); // 恢复当前线程的 RequestContext
+        }
+        if (!executed) {
+            return null; // 被 Interceptor 拦截的输出 (比如登录提示)，不能给其他请求使用
+        }
+
+        if (cacheable == null) {
+            return CachedResponse.create(buffer, 0); // @Coalesced
+        }
+        CachedResponse cached = CachedResponse.create(buffer, cacheable.ttl() * 1000L, cacheable.staleWhileRevalidate() * 1000L);
+        if (cached != null) {
+            responseCache.put(key, cached);
+        }
+        return cached;
+    }
+
     private void handleError(RequestContext ctx, Exception e) throws IOException, ServletException {
         ctx.getRequest().setAttribute(ExceptionHandler.KEY_IN_REQUEST, e);
 
@@ -168,6 +368,16 @@ public final class DispatcherFilter implements Filter {
             }
         }
 
+        UploadLimitExceededException limitExceeded = UploadLimitExceededException.find(e);
+        if (limitExceeded != null) {
+            HttpServletResponse response = ctx.getResponse();
+            if (!response.isCommitted()) {
+                // 请求的内容没有读取完，需要关闭连接
+                response.setHeader("Connection", "close");
+                response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, limitExceeded.getMessage());
+                return;
+            }
+        }
         if (e instanceof RuntimeException) {
             throw (RuntimeException) e;
         }
@@ -195,6 +405,8 @@ public final class DispatcherFilter implements Filter {
             plugin.destory();
         }
 
+        asyncDispatcher.shutdown();
+
         log.info("DispatcherFilter exit.");
     }
 }
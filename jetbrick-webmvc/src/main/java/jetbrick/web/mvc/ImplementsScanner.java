@@ -98,6 +98,18 @@ public final class ImplementsScanner {
         }
     }
 
+    /**
+     * 从编译期生成的索引中加载 Annotation (代替 autoscan).
+     */
+    public void loadFromIndex(ComponentIndex index, Collection<Class<? extends Annotation>> annotations) {
+        for (Class<? extends Annotation> annotation : annotations) {
+            String key = annotation.getName();
+            for (Class<?> cls : index.getClasses(key)) {
+                addImplementClass(key, cls);
+            }
+        }
+    }
+
     private void addImplementClass(String key, Class<?> cls) {
         List<Class<?>> impls = implementsMap.get(key);
         if (impls == null) {
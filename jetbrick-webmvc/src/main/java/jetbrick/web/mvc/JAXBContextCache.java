@@ -0,0 +1,164 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.bind.*;
+import jetbrick.bean.MethodInfo;
+import jetbrick.bean.ParameterInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 全局的 JAXBContext 缓存.
+ *
+ * <p>JAXBContext.newInstance() 的开销非常大，这里按照 Class 缓存 JAXBContext (线程安全)，
+ * 并且为每个 Class 维护 Marshaller/Unmarshaller 对象池 (它们本身不是线程安全的，但是可以重复使用).</p>
+ */
+public final class JAXBContextCache {
+    private static final Logger log = LoggerFactory.getLogger(JAXBContextCache.class);
+    private static final ConcurrentMap<Class<?>, Entry> cache = new ConcurrentHashMap<Class<?>, Entry>();
+
+    // metrics
+    private static final AtomicLong contextCreatedCount = new AtomicLong();
+    private static final AtomicLong marshallerCreatedCount = new AtomicLong();
+    private static final AtomicLong unmarshallerCreatedCount = new AtomicLong();
+
+    public static JAXBContext getContext(Class<?> type) throws JAXBException {
+        return getEntry(type).context;
+    }
+
+    /**
+     * 从对象池中取出一个 Marshaller，使用完毕后必须调用 {@link #release(Class, Marshaller)} 归还.
+     */
+    public static Marshaller borrowMarshaller(Class<?> type) throws JAXBException {
+        Entry entry = getEntry(type);
+        Marshaller marshaller = entry.marshallers.poll();
+        if (marshaller == null) {
+            marshaller = entry.context.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_ENCODING, WebConfig.getHttpEncoding());
+            if (WebConfig.isDevelopment()) {
+                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+            }
+            marshallerCreatedCount.incrementAndGet();
+        }
+        return marshaller;
+    }
+
+    public static void release(Class<?> type, Marshaller marshaller) {
+        Entry entry = cache.get(type);
+        if (entry != null) {
+            entry.marshallers.offer(marshaller);
+        }
+    }
+
+    /**
+     * 从对象池中取出一个 Unmarshaller，使用完毕后必须调用 {@link #release(Class, Unmarshaller)} 归还.
+     */
+    public static Unmarshaller borrowUnmarshaller(Class<?> type) throws JAXBException {
+        Entry entry = getEntry(type);
+        Unmarshaller unmarshaller = entry.unmarshallers.poll();
+        if (unmarshaller == null) {
+            unmarshaller = entry.context.createUnmarshaller();
+            unmarshallerCreatedCount.incrementAndGet();
+        }
+        return unmarshaller;
+    }
+
+    public static void release(Class<?> type, Unmarshaller unmarshaller) {
+        Entry entry = cache.get(type);
+        if (entry != null) {
+            entry.unmarshallers.offer(unmarshaller);
+        }
+    }
+
+    /**
+     * 预先创建 Action 签名中用到的 JAXBContext (参数和返回值中的 JAXBElement&lt;T&gt;).
+     */
+    public static void prewarm(MethodInfo method, Class<?> declaringClass) {
+        if (method.getRawReturnType(declaringClass) == JAXBElement.class) {
+            prewarm(method.getRawReturnComponentType(declaringClass, 0));
+        }
+        List<ParameterInfo> parameters = method.getParameters();
+        for (ParameterInfo parameter : parameters) {
+            if (parameter.getRawType(declaringClass) == JAXBElement.class) {
+                prewarm(parameter.getRawComponentType(declaringClass, 0));
+            }
+        }
+    }
+
+    private static void prewarm(Class<?> type) {
+        if (type == null || type == Object.class) {
+            return;
+        }
+        try {
+            getEntry(type);
+        } catch (JAXBException e) {
+            log.warn("Unable to prewarm JAXBContext for " + type.getName(), e);
+        }
+    }
+
+    // 已经缓存的 JAXBContext 个数
+    public static int getContextCount() {
+        return cache.size();
+    }
+
+    // 实际调用 JAXBContext.newInstance() 的次数 (并发时可能略大于 getContextCount())
+    public static long getContextCreatedCount() {
+        return contextCreatedCount.get();
+    }
+
+    public static long getMarshallerCreatedCount() {
+        return marshallerCreatedCount.get();
+    }
+
+    public static long getUnmarshallerCreatedCount() {
+        return unmarshallerCreatedCount.get();
+    }
+
+    private static Entry getEntry(Class<?> type) throws JAXBException {
+        Entry entry = cache.get(type);
+        if (entry == null) {
+            JAXBContext context = JAXBContext.newInstance(type);
+            contextCreatedCount.incrementAndGet();
+            log.debug("create JAXBContext for {}", type.getName());
+
+            entry = new Entry(context);
+            Entry old = cache.putIfAbsent(type, entry);
+            if (old != null) {
+                entry = old;
+            }
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+        final JAXBContext context;
+        final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<Marshaller>();
+        final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<Unmarshaller>();
+
+        Entry(JAXBContext context) {
+            this.context = context;
+        }
+    }
+}
@@ -19,11 +19,13 @@
  */
 package jetbrick.web.mvc;
 
+import java.io.Closeable;
 import java.io.File;
 import java.util.*;
 import javax.servlet.ServletContext;
 import javax.servlet.http.*;
 import jetbrick.bean.MethodInfo;
+import jetbrick.io.IoUtils;
 import jetbrick.web.mvc.action.HttpMethod;
 import jetbrick.web.mvc.multipart.FilePart;
 import jetbrick.web.mvc.multipart.MultipartRequest;
@@ -32,6 +34,7 @@ import jetbrick.web.servlet.RequestIntrospectUtils;
 
 public class RequestContext {
     private final static ThreadLocal<RequestContext> threadContext = new InheritableThreadLocal<RequestContext>();
+    private static final String KEY_CLOSEABLES_IN_REQUEST = "jetbrick.mvc.closeables";
     private final HttpServletResponse response;
     private final HttpServletRequest request;
     private final String pathInfo;
@@ -53,10 +56,41 @@ public class RequestContext {
         threadContext.remove();
     }
 
+    // 异步请求：在其他线程中继续处理此请求
+    protected void attach() {
+        threadContext.set(this);
+    }
+
     public static RequestContext getCurrent() {
         return threadContext.get();
     }
 
+    //--- resources ------------------------------------------------------
+    /**
+     * 注册一个在请求结束的时候自动关闭的资源 (同步请求在 DispatcherFilter 返回之前，异步请求在 AsyncContext 完成的时候).
+     */
+    public void closeOnCompletion(Closeable closeable) {
+        @SuppressWarnings("unchecked")
+        List<Closeable> closeables = (List<Closeable>) request.getAttribute(KEY_CLOSEABLES_IN_REQUEST);
+        if (closeables == null) {
+            closeables = new ArrayList<Closeable>(2);
+            request.setAttribute(KEY_CLOSEABLES_IN_REQUEST, closeables);
+        }
+        closeables.add(closeable);
+    }
+
+    // 请求结束：关闭所有注册的资源
+    protected void closeResources() {
+        @SuppressWarnings("unchecked")
+        List<Closeable> closeables = (List<Closeable>) request.getAttribute(KEY_CLOSEABLES_IN_REQUEST);
+        if (closeables != null) {
+            request.removeAttribute(KEY_CLOSEABLES_IN_REQUEST);
+            for (Closeable closeable : closeables) {
+                IoUtils.closeQuietly(closeable);
+            }
+        }
+    }
+
     //----- servlet ------------------------------------------
     public HttpServletRequest getRequest() {
         return request;
@@ -208,4 +242,15 @@ public class RequestContext {
         ResultHandler<Object> handler = resolver.lookup(resultClass);
         handler.handle(this, result);
     }
+
+    // 将 result 输出到指定的 response 中 (如：BufferedResponseWrapper)
+    public void handleResultTo(Object result, HttpServletResponse response) throws Exception {
+        RequestContext ctx = new RequestContext(request, response, pathInfo, httpMethod, routeInfo);
+        try {
+            ResultHandler<Object> handler = WebConfig.getResultHandlerResolver().lookup(result.getClass());
+            handler.handle(ctx, result);
+        } finally {
+            attach(); // 恢复当前线程的 RequestContext
+        }
+    }
 }
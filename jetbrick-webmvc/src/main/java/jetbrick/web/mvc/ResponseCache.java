@@ -0,0 +1,168 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.security.Principal;
+import java.util.*;
+import jetbrick.web.mvc.action.Cacheable;
+
+/**
+ * 服务器端的 response 缓存 (用于 &#64;Cacheable).
+ *
+ * <p>按照最近访问的顺序淘汰，缓存的总大小 (body + headers) 不超过 web.cache.size.</p>
+ *
+ * <p>&#64;Cacheable(staleWhileRevalidate = n) 的缓存过期之后的 n 秒内，继续输出旧的内容，同时由一个请求在后台刷新.</p>
+ *
+ * <p>缓存的 key 不包含 session 和 cookie，只能用于所有用户都相同的公共内容.
+ * 通过容器认证的请求 (request.getUserPrincipal() != null)，key 中会包含用户名，每个用户单独缓存.</p>
+ */
+public final class ResponseCache {
+    public static final long DEFAULT_SIZE = 32 * 1024 * 1024;
+    public static final long DEFAULT_WAIT_TIMEOUT = 30 * 1000;
+
+    private final long maxSize;
+    private final long waitTimeout;
+    private final LinkedHashMap<String, CachedResponse> map;
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public ResponseCache(long maxSize, long waitTimeout) {
+        this.maxSize = maxSize;
+        this.waitTimeout = waitTimeout;
+        this.map = new LinkedHashMap<String, CachedResponse>(64, 0.75f, true);
+    }
+
+    // 请求路径 (包含 PathVariable) + 用户名 + 指定的参数 + 指定的请求头
+    public static String createKey(RequestContext ctx, Cacheable cacheable) {
+        return createKey(ctx, cacheable.params(), cacheable.headers());
+    }
+
+    public static String createKey(RequestContext ctx, String[] params, String[] headers) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(ctx.getPathInfo());
+        Principal principal = ctx.getRequest().getUserPrincipal();
+        if (principal != null) {
+            sb.append('\0').append('@').append(principal.getName());
+        }
+        for (String name : params) {
+            sb.append('\0').append(name).append('=');
+            String[] values = ctx.getRequest().getParameterValues(name);
+            if (values != null) {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        sb.append('\1');
+                    }
+                    sb.append(values[i]);
+                }
+            }
+        }
+        for (String name : headers) {
+            sb.append('\0').append(name).append(':');
+            Enumeration<String> values = ctx.getRequest().getHeaders(name);
+            if (values != null) {
+                while (values.hasMoreElements()) {
+                    sb.append(values.nextElement()).append('\1');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    // 返回 null 表示没有缓存或者已经过期 (stale-while-revalidate 期间返回旧的内容，调用者需要检查 isExpired())
+    public synchronized CachedResponse get(String key) {
+        CachedResponse cached = map.get(key);
+        if (cached != null && cached.isStaleExpired(System.currentTimeMillis())) {
+            map.remove(key);
+            size -= cached.getSize();
+            cached = null;
+        }
+        if (cached == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return cached;
+    }
+
+    public synchronized void put(String key, CachedResponse cached) {
+        if (cached.getSize() > maxSize) {
+            return; // 太大了，不缓存
+        }
+        CachedResponse old = map.put(key, cached);
+        if (old != null) {
+            size -= old.getSize();
+        }
+        size += cached.getSize();
+
+        // 淘汰最久没有访问的
+        if (size > maxSize) {
+            Iterator<CachedResponse> it = map.values().iterator();
+            while (size > maxSize && it.hasNext()) {
+                CachedResponse eldest = it.next();
+                it.remove();
+                size -= eldest.getSize();
+                evictionCount++;
+            }
+        }
+    }
+
+    public synchronized void remove(String key) {
+        CachedResponse cached = map.remove(key);
+        if (cached != null) {
+            size -= cached.getSize();
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        size = 0;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    // 等待相同 key 的其他请求执行完成的最长时间 (毫秒)
+    public long getWaitTimeout() {
+        return waitTimeout;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getCount() {
+        return map.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+}
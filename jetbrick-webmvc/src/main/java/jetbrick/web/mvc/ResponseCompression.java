@@ -0,0 +1,217 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.Deflater;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jetbrick.ioc.annotation.IocInit;
+import jetbrick.util.StringUtils;
+
+/**
+ * 根据 Accept-Encoding 对 ResultHandler 的输出进行 gzip/deflate 压缩.
+ *
+ * <pre>
+ * web.http.compression = $compression
+ * $compression = jetbrick.web.mvc.ResponseCompression
+ * $compression.minSize = 1024
+ * $compression.mimetypes = text/html,application/json
+ * </pre>
+ *
+ * <p>RawData/RawDownload 输出文件的时候，如果存在同名的 .gz 文件，那么直接输出 .gz 文件 (需要 precompressed = true).</p>
+ */
+public final class ResponseCompression {
+    public static final String DEFAULT_MIMETYPES = "text/html,text/plain,text/css,text/xml,text/javascript,application/json,application/javascript,application/xml";
+    public static final int DEFAULT_MIN_SIZE = 1024;
+    private static final int MAX_POOLED_DEFLATERS = 32; // gzip/deflate 各自的上限
+
+    private final Set<String> mimetypeSet = new HashSet<String>();
+    private final BoundedPool<Deflater> gzipDeflaters = new BoundedPool<Deflater>(MAX_POOLED_DEFLATERS);
+    private final BoundedPool<Deflater> zlibDeflaters = new BoundedPool<Deflater>(MAX_POOLED_DEFLATERS);
+    private String mimetypes = DEFAULT_MIMETYPES;
+    private int minSize = DEFAULT_MIN_SIZE;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private boolean precompressed = true;
+
+    public void setMimetypes(String mimetypes) {
+        this.mimetypes = mimetypes;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public void setPrecompressed(boolean precompressed) {
+        this.precompressed = precompressed;
+    }
+
+    @IocInit
+    private void initialize() {
+        if (mimetypes != null && mimetypes.length() > 0) {
+            for (String mimetype : StringUtils.split(mimetypes, ',')) {
+                mimetype = StringUtils.trimToNull(mimetype);
+                if (mimetype != null) {
+                    mimetypeSet.add(mimetype.toLowerCase());
+                }
+            }
+        }
+    }
+
+    /**
+     * 返回包装后的 response.
+     *
+     * <p>客户端不支持压缩的时候 (包括 HEAD 请求) 也需要包装，不压缩但是给可以压缩的 Content-Type 加上 Vary: Accept-Encoding，
+     * 否则共享缓存 (如：CDN) 可能把没有压缩的内容返回给支持压缩的客户端 (或者相反).</p>
+     */
+    public HttpServletResponse wrap(HttpServletRequest request, HttpServletResponse response) {
+        String encoding = "HEAD".equals(request.getMethod()) ? null : getAcceptedEncoding(request);
+        return new CompressionResponseWrapper(response, this, encoding);
+    }
+
+    /**
+     * 请求处理完毕，结束压缩输出 (写入 gzip trailer，归还 Deflater).
+     */
+    public static void finish(HttpServletResponse response) throws IOException {
+        if (response instanceof CompressionResponseWrapper) {
+            ((CompressionResponseWrapper) response).finish();
+        }
+    }
+
+    /**
+     * 已经确定不需要压缩的话 (Content-Type 不允许压缩，已经设置了 Content-Encoding，非 200)，返回原始的 response，
+     * 这样可以使用容器的 sendfile 等功能；否则返回原来的 response.
+     *
+     * <p>必须在输出任何内容之前调用.</p>
+     */
+    public static HttpServletResponse bypass(HttpServletResponse response) {
+        if (response instanceof CompressionResponseWrapper) {
+            HttpServletResponse original = ((CompressionResponseWrapper) response).bypass();
+            if (original != null) {
+                return original;
+            }
+        }
+        return response;
+    }
+
+    /**
+     * 添加 Vary: Accept-Encoding (已经存在的话不重复添加).
+     */
+    public static void addVary(HttpServletResponse response) {
+        for (String vary : response.getHeaders("Vary")) {
+            if (isAccepted(vary, "Accept-Encoding") || "*".equals(vary.trim())) {
+                return;
+            }
+        }
+        response.addHeader("Vary", "Accept-Encoding");
+    }
+
+    /**
+     * 返回没有压缩的 response (用于 SSE 等需要直接输出的场景).
+     */
+    public static HttpServletResponse unwrap(HttpServletResponse response) {
+        if (response instanceof CompressionResponseWrapper) {
+            return (HttpServletResponse) ((CompressionResponseWrapper) response).getResponse();
+        }
+        return response;
+    }
+
+    public boolean isPrecompressed() {
+        return precompressed;
+    }
+
+    // 是否可以直接输出预先压缩好的 .gz 文件
+    public boolean isPrecompressedAccepted(HttpServletRequest request) {
+        return precompressed && isAccepted(request.getHeader("Accept-Encoding"), "gzip");
+    }
+
+    // 返回客户端支持的 encoding (gzip 优先)，都不支持的话返回 null
+    private String getAcceptedEncoding(HttpServletRequest request) {
+        String header = request.getHeader("Accept-Encoding");
+        if (header == null) {
+            return null;
+        }
+        if (isAccepted(header, "gzip")) {
+            return "gzip";
+        }
+        if (isAccepted(header, "deflate")) {
+            return "deflate";
+        }
+        return null;
+    }
+
+    // 简单解析 Accept-Encoding，q=0 表示不支持
+    private static boolean isAccepted(String header, String encoding) {
+        if (header == null) {
+            return false;
+        }
+        for (String item : StringUtils.split(header, ',')) {
+            item = item.trim();
+            int ipos = item.indexOf(';');
+            String name = (ipos < 0) ? item : item.substring(0, ipos).trim();
+            if (name.equalsIgnoreCase(encoding) || "*".equals(name)) {
+                if (ipos > 0) {
+                    String param = item.substring(ipos + 1).trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Float.parseFloat(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        int ipos = contentType.indexOf(';');
+        String mimetype = (ipos < 0) ? contentType : contentType.substring(0, ipos);
+        return mimetypeSet.contains(mimetype.trim().toLowerCase());
+    }
+
+    int getMinSize() {
+        return minSize;
+    }
+
+    // nowrap = true 用于 gzip，false 用于 deflate (zlib 格式)
+    Deflater borrowDeflater(boolean nowrap) {
+        Deflater deflater = (nowrap ? gzipDeflaters : zlibDeflaters).poll();
+        return (deflater == null) ? new Deflater(level, nowrap) : deflater;
+    }
+
+    // 池已满的时候，直接释放 native 内存
+    void release(Deflater deflater, boolean nowrap) {
+        deflater.reset();
+        if (!(nowrap ? gzipDeflaters : zlibDeflaters).offer(deflater)) {
+            deflater.end();
+        }
+    }
+}
@@ -20,9 +20,13 @@
 package jetbrick.web.mvc;
 
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import javax.xml.bind.JAXBElement;
 import jetbrick.ioc.Ioc;
+import jetbrick.util.ClassLoaderUtils;
 import jetbrick.util.Validate;
 import jetbrick.web.mvc.result.*;
 import org.slf4j.Logger;
@@ -46,6 +50,17 @@ public final class ResultHandlerResolver {
         register(RawDownload.class, RawDownloadResultHandler.class);
         register(Document.class, XmlDocumentResultHandler.class);
         register(JAXBElement.class, JAXBElementResultHandler.class);
+        register(Callable.class, CallableResultHandler.class);
+        register(Future.class, FutureResultHandler.class);
+        register(DeferredResult.class, DeferredResultResultHandler.class);
+        register(SseEmitter.class, SseEmitterResultHandler.class);
+        register(Iterator.class, JsonStreamResultHandler.class);
+        register(JsonStream.class, JsonStreamResultHandler.class);
+        Class<?> baseStreamClass = ClassLoaderUtils.loadClass("java.util.stream.BaseStream");
+        if (baseStreamClass != null) {
+            register(baseStreamClass, JsonStreamResultHandler.class); // JDK 8+
+        }
+        register(ConditionalResult.class, ConditionalResultHandler.class);
     }
 
     public void register(Class<?> resultClass, Class<?> resultHandlerClass) {
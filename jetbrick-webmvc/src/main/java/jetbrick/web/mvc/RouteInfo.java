@@ -45,6 +45,10 @@ public class RouteInfo {
         return action;
     }
 
+    public boolean hasPathVariables() {
+        return pathVariables != null && pathVariables.size() > 0;
+    }
+
     public String getPathVariable(String name) {
         if (pathVariables != null) {
             return pathVariables.getValue(name);
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.util.concurrent.*;
+
+/**
+ * 合并相同 key 的并发调用：只有第一个调用真正执行，其他的调用等待并共享它的结果 (包括异常).
+ *
+ * <p>等待超过 timeout 的调用不再等待，直接执行自己的 callable.</p>
+ */
+public final class SingleFlight<T> {
+    private final ConcurrentMap<Object, FutureTask<T>> calls = new ConcurrentHashMap<Object, FutureTask<T>>();
+    private final long timeout;
+
+    /**
+     * @param timeout 等待其他调用的最长时间 (毫秒)，小于等于 0 表示一直等待.
+     */
+    public SingleFlight(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public T execute(Object key, Callable<T> callable) throws Exception {
+        FutureTask<T> task = new FutureTask<T>(callable);
+        FutureTask<T> running = calls.putIfAbsent(key, task);
+        if (running == null) {
+            try {
+                task.run(); // 在当前线程中执行
+            } finally {
+                calls.remove(key, task);
+            }
+            running = task;
+        }
+
+        try {
+            if (running == task || timeout <= 0) {
+                return running.get();
+            }
+            return running.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return callable.call(); // 等待超时，自己执行
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    // 正在执行的 key 的数量
+    public int getRunningCount() {
+        return calls.size();
+    }
+}
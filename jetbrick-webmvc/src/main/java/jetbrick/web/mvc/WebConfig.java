@@ -30,7 +30,10 @@ import jetbrick.web.mvc.action.annotation.RequestBodyGetterResolver;
 import jetbrick.web.mvc.action.annotation.RequestParamGetterResolver;
 import jetbrick.web.mvc.interceptor.Interceptor;
 import jetbrick.web.mvc.multipart.FileUploadResolver;
+import jetbrick.web.mvc.multipart.PartConsumer;
+import jetbrick.web.mvc.multipart.UploadLimits;
 import jetbrick.web.mvc.plugin.Plugin;
+import jetbrick.web.mvc.result.JsonElementWriter;
 
 public final class WebConfig {
     public static final String DEFAULT_CONFIG_FILE = "/WEB-INF/jetbrick-webmvc.properties";
@@ -44,9 +47,19 @@ public final class WebConfig {
     protected static String httpEncoding;
     protected static boolean httpCache;
     protected static File uploaddir;
+    protected static int uploadThreshold;
+    protected static long uploadMemorySize;
+    protected static UploadLimits uploadLimits;
+    protected static List<PartConsumer> partConsumers;
     protected static BypassRequestUrls bypassRequestUrls;
     protected static CORSRequestProcessor corsRequestProcessor;
+    protected static ResponseCompression responseCompression;
+    protected static ResponseCache responseCache;
     protected static Router router;
+    protected static String actionInvoker;
+    protected static AsyncDispatcher asyncDispatcher;
+    protected static boolean asyncDispatch;
+    protected static boolean jaxbPrewarm;
     protected static ExceptionHandler exceptionHandler;
     protected static FileUploadResolver fileUploadResolver;
     protected static ResultHandlerResolver resultHandlerResolver;
@@ -54,6 +67,7 @@ public final class WebConfig {
     protected static ArgumentGetterResolver argumentGetterResolver;
     protected static RequestParamGetterResolver requestParamGetterResolver;
     protected static RequestBodyGetterResolver requestBodyGetterResolver;
+    protected static JsonElementWriter jsonElementWriter;
     protected static List<Interceptor> interceptors;
     protected static List<Plugin> plugins;
 
@@ -85,6 +99,23 @@ public final class WebConfig {
         return uploaddir;
     }
 
+    public static int getUploadThreshold() {
+        return uploadThreshold;
+    }
+
+    // 每个请求最多保存在内存中的上传文件的大小，小于 0 表示不限制
+    public static long getUploadMemorySize() {
+        return uploadMemorySize;
+    }
+
+    public static UploadLimits getUploadLimits() {
+        return uploadLimits;
+    }
+
+    public static List<PartConsumer> getPartConsumers() {
+        return partConsumers;
+    }
+
     public static Ioc getIoc() {
         return ioc;
     }
@@ -97,10 +128,34 @@ public final class WebConfig {
         return corsRequestProcessor;
     }
 
+    public static ResponseCompression getResponseCompression() {
+        return responseCompression;
+    }
+
+    public static ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
     public static Router getRouter() {
         return router;
     }
 
+    public static String getActionInvoker() {
+        return actionInvoker;
+    }
+
+    public static AsyncDispatcher getAsyncDispatcher() {
+        return asyncDispatcher;
+    }
+
+    public static boolean isAsyncDispatch() {
+        return asyncDispatch;
+    }
+
+    public static boolean isJaxbPrewarm() {
+        return jaxbPrewarm;
+    }
+
     public static ExceptionHandler getExceptionHandler() {
         return exceptionHandler;
     }
@@ -109,6 +164,11 @@ public final class WebConfig {
         return fileUploadResolver;
     }
 
+    // 返回 null 表示没有 JSON 插件
+    public static JsonElementWriter getJsonElementWriter() {
+        return jsonElementWriter;
+    }
+
     public static ResultHandlerResolver getResultHandlerResolver() {
         return resultHandlerResolver;
     }
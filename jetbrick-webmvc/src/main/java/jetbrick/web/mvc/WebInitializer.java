@@ -32,19 +32,27 @@ import jetbrick.ioc.annotation.IocBean;
 import jetbrick.ioc.loader.IocAnnotationLoader;
 import jetbrick.ioc.loader.IocPropertiesLoader;
 import jetbrick.util.StringUtils;
+import jetbrick.web.mvc.action.ActionMethodInvoker;
 import jetbrick.web.mvc.action.ArgumentGetterResolver;
 import jetbrick.web.mvc.action.Controller;
 import jetbrick.web.mvc.action.annotation.*;
 import jetbrick.web.mvc.interceptor.Interceptor;
 import jetbrick.web.mvc.multipart.FileUpload;
 import jetbrick.web.mvc.multipart.FileUploadResolver;
+import jetbrick.web.mvc.multipart.PartConsumer;
+import jetbrick.web.mvc.multipart.UploadLimits;
 import jetbrick.web.mvc.plugin.Plugin;
+import jetbrick.web.mvc.result.JsonElementWriter;
 import jetbrick.web.mvc.result.ResultHandler;
 import jetbrick.web.mvc.result.view.ViewHandler;
+import jetbrick.web.mvc.router.AbstractRouter;
 import jetbrick.web.mvc.router.RestfulRouter;
 import jetbrick.web.servlet.ServletUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public final class WebInitializer {
+    private static final Logger log = LoggerFactory.getLogger(WebInitializer.class);
 
     public static void initialize(ServletContext sc, String configLocation) {
         File webroot = ServletUtils.getWebroot(sc);
@@ -68,7 +76,23 @@ public final class WebInitializer {
         annotationList.add(Managed.class);
         ImplementsScanner scanner = new ImplementsScanner();
         scanner.loadFromConfig();
-        scanner.autoscan(packageNames, annotationList);
+
+        // 优先使用编译期生成的索引，没有被索引覆盖的 package 仍然扫描 classpath
+        ComponentIndex index = null;
+        if (config.asBoolean("web.scan.index", "true")) {
+            index = ComponentIndex.load(packageNames);
+        }
+        if (index == null) {
+            log.info("web.scan.packages = {}, loaded by scanning classpath", packageNames);
+            scanner.autoscan(packageNames, annotationList);
+        } else if (index.getUncoveredPackages().isEmpty()) {
+            log.info("web.scan.packages = {}, loaded from {}", packageNames, ComponentIndex.INDEX_FILE);
+            scanner.loadFromIndex(index, annotationList);
+        } else {
+            log.warn("web.scan.packages = {}, loaded from {}, scanning classpath for packages not in the index: {}", packageNames, ComponentIndex.INDEX_FILE, index.getUncoveredPackages());
+            scanner.loadFromIndex(index, annotationList);
+            scanner.autoscan(index.getUncoveredPackages(), annotationList);
+        }
 
         // create ioc container
         MutableIoc ioc = new MutableIoc();
@@ -92,9 +116,18 @@ public final class WebInitializer {
         WebConfig.httpEncoding = config.asString("web.http.encoding", "utf-8");
         WebConfig.httpCache = config.asBoolean("web.http.cache", "false");
         WebConfig.uploaddir = config.asFile("web.upload.dir", "${java.io.tmpdir}");
+        WebConfig.uploadThreshold = config.asInteger("web.upload.threshold", "10240");
+        WebConfig.uploadMemorySize = config.asLong("web.upload.memory.size", "1048576");
+        WebConfig.uploadLimits = new UploadLimits(config.asLong("web.upload.max.request.size", "-1"), config.asLong("web.upload.max.file.size", "-1"), config.asInteger("web.upload.max.parts", "-1"), config.asLong("web.upload.max.field.size", "1048576"));
         WebConfig.bypassRequestUrls = config.asObject("web.urls.bypass", BypassRequestUrls.class);
         WebConfig.corsRequestProcessor = config.asObject("web.urls.cors", CORSRequestProcessor.class);
+        WebConfig.responseCompression = config.asObject("web.http.compression", ResponseCompression.class);
+        WebConfig.responseCache = new ResponseCache(config.asLong("web.cache.size", String.valueOf(ResponseCache.DEFAULT_SIZE)), config.asLong("web.cache.wait.timeout", String.valueOf(ResponseCache.DEFAULT_WAIT_TIMEOUT)));
         WebConfig.router = config.asObject("web.urls.router", Router.class, RestfulRouter.class.getName());
+        WebConfig.actionInvoker = config.asString("web.action.invoker", ActionMethodInvoker.ASM);
+        WebConfig.asyncDispatcher = new AsyncDispatcher(config.asLong("web.async.timeout", String.valueOf(AsyncDispatcher.DEFAULT_TIMEOUT)), config.asInteger("web.async.threads", String.valueOf(AsyncDispatcher.DEFAULT_THREADS)), config.asString("web.async.executor", AsyncDispatcher.EXECUTOR_VIRTUAL));
+        WebConfig.asyncDispatch = config.asBoolean("web.async.dispatch", "false");
+        WebConfig.jaxbPrewarm = config.asBoolean("web.jaxb.prewarm", "false");
         WebConfig.exceptionHandler = config.asObject("web.error.handler", ExceptionHandler.class);
         WebConfig.fileUploadResolver = ioc.getBean(FileUploadResolver.class);
         WebConfig.argumentGetterResolver = ioc.getBean(ArgumentGetterResolver.class);
@@ -104,6 +137,7 @@ public final class WebInitializer {
         WebConfig.resultHandlerResolver = ioc.getBean(ResultHandlerResolver.class);
         WebConfig.interceptors = config.asObjectList("web.interceptors", Interceptor.class);
         WebConfig.plugins = config.asObjectList("web.plugins", Plugin.class);
+        WebConfig.partConsumers = config.asObjectList("web.upload.consumers", PartConsumer.class);
 
         // ioc init for config object
         if (WebConfig.bypassRequestUrls != null) {
@@ -114,6 +148,10 @@ public final class WebInitializer {
             ioc.injectSetters(WebConfig.corsRequestProcessor);
             ioc.initialize(WebConfig.corsRequestProcessor);
         }
+        if (WebConfig.responseCompression != null) {
+            ioc.injectSetters(WebConfig.responseCompression);
+            ioc.initialize(WebConfig.responseCompression);
+        }
         if (WebConfig.router != null) {
             ioc.injectSetters(WebConfig.router);
             ioc.initialize(WebConfig.router);
@@ -130,10 +168,14 @@ public final class WebInitializer {
             ioc.injectSetters(interceptor);
             ioc.initialize(interceptor);
         }
+        for (PartConsumer consumer : WebConfig.partConsumers) {
+            ioc.injectSetters(consumer);
+            ioc.initialize(consumer);
+        }
 
         // register components
         registerManaged(scanner.getList(Managed.class));
-        registerControllers(scanner.getList(Controller.class));
+        registerControllers(scanner.getList(Controller.class), index);
     }
 
     private static void registerManaged(Collection<Class<?>> classes) {
@@ -198,18 +240,28 @@ public final class WebInitializer {
                 }
             } else if (FileUpload.class.isAssignableFrom(cls)) {
                 fileUploadResolver.register(cls);
+            } else if (JsonElementWriter.class.isAssignableFrom(cls)) {
+                Ioc ioc = WebConfig.getIoc();
+                JsonElementWriter writer = (JsonElementWriter) ioc.newInstance(cls);
+                ioc.injectSetters(writer);
+                ioc.initialize(writer);
+                WebConfig.jsonElementWriter = writer;
             } else {
                 throw new IllegalStateException("@Managed annotation is illegal in class: " + cls.getName());
             }
         }
     }
 
-    private static void registerControllers(Collection<Class<?>> classes) {
+    private static void registerControllers(Collection<Class<?>> classes, ComponentIndex index) {
         Router router = WebConfig.getRouter();
         for (Class<?> cls : classes) {
             Controller controller = cls.getAnnotation(Controller.class);
             if (controller != null) {
-                router.registerController(cls);
+                if (index != null && index.isIndexed(cls) && router instanceof AbstractRouter) {
+                    ((AbstractRouter) router).registerController(cls, index.getActions(cls));
+                } else {
+                    router.registerController(cls);
+                }
             }
         }
     }
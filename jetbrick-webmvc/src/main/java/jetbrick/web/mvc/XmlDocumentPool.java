@@ -0,0 +1,134 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.*;
+
+/**
+ * XML 解析/输出对象池.
+ *
+ * <p>DocumentBuilder 和 Transformer 都不是线程安全的，每次创建的开销又比较大，
+ * 所以这里用对象池复用 (没有使用 ThreadLocal，因为 Action 可能在 virtual thread 中执行).</p>
+ *
+ * <p>解析的是客户端提交的 XML，所以禁止 DOCTYPE 和外部实体 (防止 XXE 以及实体膨胀攻击).</p>
+ */
+public final class XmlDocumentPool {
+    private static final DocumentBuilderFactory builderFactory = createDocumentBuilderFactory();
+    private static final TransformerFactory transformerFactory = createTransformerFactory();
+    private static final XMLInputFactory inputFactory = createXMLInputFactory();
+
+    private static final Queue<DocumentBuilder> builders = new ConcurrentLinkedQueue<DocumentBuilder>();
+    private static final Queue<Transformer> transformers = new ConcurrentLinkedQueue<Transformer>();
+
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to disable DOCTYPE and external entities: " + factory.getClass().getName(), e);
+        }
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        return factory;
+    }
+
+    private static TransformerFactory createTransformerFactory() {
+        TransformerFactory factory = TransformerFactory.newInstance();
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+        return factory;
+    }
+
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * 从对象池中取出一个 DocumentBuilder，使用完毕后必须调用 {@link #release(DocumentBuilder)} 归还.
+     */
+    public static DocumentBuilder borrowDocumentBuilder() {
+        DocumentBuilder builder = builders.poll();
+        if (builder == null) {
+            // Factory 本身不保证线程安全
+            synchronized (builderFactory) {
+                try {
+                    builder = builderFactory.newDocumentBuilder();
+                } catch (ParserConfigurationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return builder;
+    }
+
+    public static void release(DocumentBuilder builder) {
+        builder.reset();
+        builders.offer(builder);
+    }
+
+    /**
+     * 从对象池中取出一个用于输出 Document 的 Transformer，使用完毕后必须调用 {@link #release(Transformer)} 归还.
+     */
+    public static Transformer borrowTransformer() {
+        Transformer transformer = transformers.poll();
+        if (transformer == null) {
+            synchronized (transformerFactory) {
+                try {
+                    transformer = transformerFactory.newTransformer();
+                } catch (TransformerConfigurationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            transformer.setOutputProperty(OutputKeys.ENCODING, WebConfig.getHttpEncoding());
+            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+            if (WebConfig.isDevelopment()) {
+                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            }
+        }
+        return transformer;
+    }
+
+    public static void release(Transformer transformer) {
+        // 注意：不能调用 reset()，否则 OutputProperty 也会被重置 (identity transformer 也没有参数需要清理)
+        transformers.offer(transformer);
+    }
+
+    /**
+     * 用于 StAX 流式解析 (配置完成后可以在多线程中共享).
+     */
+    public static XMLInputFactory getXMLInputFactory() {
+        return inputFactory;
+    }
+}
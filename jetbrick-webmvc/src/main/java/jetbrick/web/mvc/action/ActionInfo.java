@@ -19,17 +19,39 @@
  */
 package jetbrick.web.mvc.action;
 
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import jetbrick.bean.MethodInfo;
+import jetbrick.ioc.Ioc;
 import jetbrick.util.concurrent.ConcurrentInitializer;
 import jetbrick.util.concurrent.LazyInitializer;
+import jetbrick.web.mvc.JAXBContextCache;
 import jetbrick.web.mvc.RequestContext;
 import jetbrick.web.mvc.ResultInfo;
+import jetbrick.web.mvc.WebConfig;
+import jetbrick.web.mvc.interceptor.*;
+import jetbrick.web.mvc.multipart.PartConsumer;
+import jetbrick.web.mvc.multipart.UploadLimits;
+import jetbrick.web.mvc.result.ConditionalUtils;
+import jetbrick.web.mvc.result.DeferredResult;
+import jetbrick.web.mvc.result.SseEmitter;
 import jetbrick.web.mvc.router.UrlTemplate;
 
 public final class ActionInfo {
+    private static final Interceptor[] EMPTY_INTERCEPTORS = new Interceptor[0];
+
     private final ControllerInfo controller;
     private final MethodInfo method;
     private final UrlTemplate urlTemplate;
+    private final Interceptor[] interceptors; // 作用于此 Action 的 Interceptor (注册时计算)
+    private final boolean asyncDispatch; // 是否在 web.async.executor 中执行
+    private final ConditionalValidator conditionalValidator; // @Conditional
+    private final Cacheable cacheable; // @Cacheable
+    private final Coalesced coalesced; // @Coalesced
+    private final boolean streamingUpload; // @StreamingUpload
+    private final UploadLimits uploadLimits; // @UploadLimit + web.upload.max.*
+    private final List<PartConsumer> partConsumers; // web.upload.consumers + @UploadConsumers
 
     private final ConcurrentInitializer<ActionMethodInjector> methodInjector = new LazyInitializer<ActionMethodInjector>() {
         @Override
@@ -42,6 +64,171 @@ public final class ActionInfo {
         this.controller = controller;
         this.method = method;
         this.urlTemplate = new UrlTemplate(url);
+        this.interceptors = resolveInterceptors();
+        this.asyncDispatch = resolveAsyncDispatch();
+        this.conditionalValidator = resolveConditionalValidator();
+        this.cacheable = resolveCacheable();
+        this.coalesced = resolveCoalesced();
+        this.streamingUpload = (method != null) && method.isAnnotationPresent(StreamingUpload.class);
+        this.uploadLimits = resolveUploadLimits();
+        this.partConsumers = resolvePartConsumers();
+
+        if (method != null && WebConfig.isJaxbPrewarm()) {
+            JAXBContextCache.prewarm(method, controller.getType());
+        }
+    }
+
+    // Action 上的 @AsyncDispatch 优先，然后是 Controller，最后是全局配置
+    private boolean resolveAsyncDispatch() {
+        if (method == null) {
+            return false;
+        }
+        AsyncDispatch annotation = method.getAnnotation(AsyncDispatch.class);
+        if (annotation == null) {
+            annotation = controller.getType().getAnnotation(AsyncDispatch.class);
+        }
+        return (annotation != null) ? annotation.value() : WebConfig.isAsyncDispatch();
+    }
+
+    // Action 上的 @Conditional 优先，然后是 Controller
+    private ConditionalValidator resolveConditionalValidator() {
+        if (method == null) {
+            return null;
+        }
+        Conditional annotation = method.getAnnotation(Conditional.class);
+        if (annotation == null) {
+            annotation = controller.getType().getAnnotation(Conditional.class);
+        }
+        if (annotation == null) {
+            return null;
+        }
+
+        Ioc ioc = WebConfig.getIoc();
+        ConditionalValidator validator = (ConditionalValidator) ioc.newInstance(annotation.value());
+        ioc.injectSetters(validator);
+        ioc.initialize(validator);
+        return validator;
+    }
+
+    private Cacheable resolveCacheable() {
+        if (method == null) {
+            return null;
+        }
+        Cacheable annotation = method.getAnnotation(Cacheable.class);
+        if (annotation != null) {
+            checkSyncAction(Cacheable.class);
+        }
+        return annotation;
+    }
+
+    private Coalesced resolveCoalesced() {
+        if (method == null) {
+            return null;
+        }
+        Coalesced annotation = method.getAnnotation(Coalesced.class);
+        if (annotation != null) {
+            checkSyncAction(Coalesced.class);
+        }
+        return annotation;
+    }
+
+    // Action 上的 @UploadLimit 优先，然后是 Controller，最后是全局配置
+    private UploadLimits resolveUploadLimits() {
+        UploadLimits limits = WebConfig.getUploadLimits();
+        if (limits == null) {
+            limits = UploadLimits.UNLIMITED;
+        }
+        if (method == null) {
+            return limits;
+        }
+        UploadLimit annotation = controller.getType().getAnnotation(UploadLimit.class);
+        if (annotation != null) {
+            limits = limits.merge(annotation.maxRequestSize(), annotation.maxFileSize(), annotation.maxParts(), annotation.maxFieldSize());
+        }
+        annotation = method.getAnnotation(UploadLimit.class);
+        if (annotation != null) {
+            limits = limits.merge(annotation.maxRequestSize(), annotation.maxFileSize(), annotation.maxParts(), annotation.maxFieldSize());
+        }
+        return limits;
+    }
+
+    // 全局的 PartConsumer 在前面，然后是 Controller 和 Action 上的 @UploadConsumers
+    private List<PartConsumer> resolvePartConsumers() {
+        List<PartConsumer> consumers = WebConfig.getPartConsumers();
+        if (consumers == null) {
+            consumers = Collections.emptyList();
+        }
+        if (method == null) {
+            return consumers;
+        }
+
+        List<Class<? extends PartConsumer>> classes = new ArrayList<Class<? extends PartConsumer>>();
+        UploadConsumers annotation = controller.getType().getAnnotation(UploadConsumers.class);
+        if (annotation != null) {
+            classes.addAll(Arrays.asList(annotation.value()));
+        }
+        annotation = method.getAnnotation(UploadConsumers.class);
+        if (annotation != null) {
+            classes.addAll(Arrays.asList(annotation.value()));
+        }
+        if (classes.isEmpty()) {
+            return consumers;
+        }
+
+        Ioc ioc = WebConfig.getIoc();
+        List<PartConsumer> results = new ArrayList<PartConsumer>(consumers);
+        for (Class<? extends PartConsumer> cls : classes) {
+            PartConsumer consumer = (PartConsumer) ioc.newInstance(cls);
+            ioc.injectSetters(consumer);
+            ioc.initialize(consumer);
+            results.add(consumer);
+        }
+        return results;
+    }
+
+    // 异步的 Action (包括 SSE) 无法缓存/共享输出，启动的时候就报错
+    private void checkSyncAction(Class<?> annotationClass) {
+        Class<?> returnType = method.getRawReturnType(controller.getType());
+        if (Callable.class.isAssignableFrom(returnType) || Future.class.isAssignableFrom(returnType) || DeferredResult.class.isAssignableFrom(returnType) || SseEmitter.class.isAssignableFrom(returnType)) {
+            throw new IllegalStateException("@" + annotationClass.getSimpleName() + " is not supported for async action: " + method);
+        }
+    }
+
+    // 根据 ScopedInterceptor 和 @ExcludeInterceptors 计算出最终的 Interceptor
+    private Interceptor[] resolveInterceptors() {
+        List<Interceptor> globalInterceptors = WebConfig.getInterceptors();
+        if (globalInterceptors == null || globalInterceptors.isEmpty() || method == null) {
+            return EMPTY_INTERCEPTORS;
+        }
+
+        ExcludeInterceptors exclude = method.getAnnotation(ExcludeInterceptors.class);
+        if (exclude == null) {
+            exclude = controller.getType().getAnnotation(ExcludeInterceptors.class);
+        }
+
+        List<Interceptor> results = new ArrayList<Interceptor>(globalInterceptors.size());
+        for (Interceptor interceptor : globalInterceptors) {
+            if (exclude != null && isExcluded(interceptor, exclude.value())) {
+                continue;
+            }
+            if (interceptor instanceof ScopedInterceptor && !((ScopedInterceptor) interceptor).accept(this)) {
+                continue;
+            }
+            results.add(interceptor);
+        }
+        return results.isEmpty() ? EMPTY_INTERCEPTORS : results.toArray(new Interceptor[results.size()]);
+    }
+
+    private static boolean isExcluded(Interceptor interceptor, Class<? extends Interceptor>[] excludes) {
+        if (excludes.length == 0) {
+            return true; // 排除所有
+        }
+        for (Class<? extends Interceptor> cls : excludes) {
+            if (cls.isInstance(interceptor)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // 和实际的 URL 进行匹配，并返回成功匹配的参数(pathVariables)
@@ -49,12 +236,61 @@ public final class ActionInfo {
         return urlTemplate.match(urlSegments, pathVariables);
     }
 
+    /**
+     * 执行 Action (在所有的 Interceptor 之后).
+     *
+     * @return 如果 @Conditional 检查到客户端缓存仍然有效 (已经设置了 304)，返回 null.
+     */
     public ResultInfo execute(RequestContext ctx) throws Exception {
+        // Conditional GET：Interceptor 放行之后再检查，避免没有权限的请求拿到 ETag/Last-Modified
+        if (conditionalValidator != null && ConditionalUtils.checkNotModified(ctx, conditionalValidator)) {
+            return null;
+        }
         Object object = controller.getObject();
         Object result = methodInjector.get().invoke(object, ctx);
         return new ResultInfo(method.getRawReturnType(controller.getType()), result);
     }
 
+    public boolean isAsyncDispatch() {
+        return asyncDispatch;
+    }
+
+    // 返回 null 表示没有使用 @Conditional
+    public ConditionalValidator getConditionalValidator() {
+        return conditionalValidator;
+    }
+
+    // 返回 null 表示没有使用 @Cacheable
+    public Cacheable getCacheable() {
+        return cacheable;
+    }
+
+    // 返回 null 表示没有使用 @Coalesced
+    public Coalesced getCoalesced() {
+        return coalesced;
+    }
+
+    // 是否由 Action 自己读取上传的内容
+    public boolean isStreamingUpload() {
+        return streamingUpload;
+    }
+
+    public UploadLimits getUploadLimits() {
+        return uploadLimits;
+    }
+
+    public List<PartConsumer> getPartConsumers() {
+        return partConsumers;
+    }
+
+    public Interceptor[] getInterceptors() {
+        return interceptors;
+    }
+
+    public UrlTemplate getUrlTemplate() {
+        return urlTemplate;
+    }
+
     public MethodInfo getMethod() {
         return method;
     }
@@ -20,6 +20,7 @@
 package jetbrick.web.mvc.action;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.List;
 import jetbrick.bean.*;
@@ -32,12 +33,13 @@ import jetbrick.web.mvc.action.annotation.AnnotatedArgumentGetter.ArgumentContex
 final class ActionMethodInjector {
     private final Method method;
     private final ArgumentGetter<?>[] getters;
+    private final ActionMethodInvoker invoker; // 为 null 表示使用反射调用
 
     @SuppressWarnings("unchecked")
     public static ActionMethodInjector create(MethodInfo method, Class<?> declaringClass) {
         List<ParameterInfo> parameters = method.getParameters();
         if (parameters.size() == 0) {
-            return new ActionMethodInjector(method.getMethod(), ArgumentGetter.EMPTY_ARRAY);
+            return new ActionMethodInjector(method.getMethod(), ArgumentGetter.EMPTY_ARRAY, createInvoker(method.getMethod(), declaringClass));
         }
 
         Ioc ioc = WebConfig.getIoc();
@@ -89,15 +91,27 @@ final class ActionMethodInjector {
             getters[i] = getter;
         }
 
-        return new ActionMethodInjector(method.getMethod(), getters);
+        return new ActionMethodInjector(method.getMethod(), getters, createInvoker(method.getMethod(), declaringClass));
     }
 
-    public ActionMethodInjector(Method method, ArgumentGetter<?>[] getters) {
+    private static ActionMethodInvoker createInvoker(Method method, Class<?> declaringClass) {
+        if (ActionMethodInvoker.REFLECT.equals(WebConfig.getActionInvoker())) {
+            return null;
+        }
+        return ActionMethodInvokerGenerator.generate(declaringClass, method);
+    }
+
+    public ActionMethodInjector(Method method, ArgumentGetter<?>[] getters, ActionMethodInvoker invoker) {
         this.method = method;
         this.getters = getters;
+        this.invoker = invoker;
     }
 
     public Object invoke(Object action, RequestContext ctx) throws Exception {
+        if (invoker != null) {
+            return invoker.invoke(action, getters, ctx);
+        }
+
         Object[] parameters = ArrayUtils.EMPTY_OBJECT_ARRAY;
         int length = getters.length;
         if (length > 0) {
@@ -106,6 +120,18 @@ final class ActionMethodInjector {
                 parameters[i] = getters[i].get(ctx);
             }
         }
-        return method.invoke(action, parameters);
+        try {
+            return method.invoke(action, parameters);
+        } catch (InvocationTargetException e) {
+            // 和 ActionMethodInvoker 保持一致，抛出 Action 中的原始异常
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
     }
 }
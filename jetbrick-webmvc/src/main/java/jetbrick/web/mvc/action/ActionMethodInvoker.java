@@ -0,0 +1,39 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import jetbrick.web.mvc.RequestContext;
+import jetbrick.web.mvc.action.annotation.ArgumentGetter;
+
+/**
+ * 由 ASM 为每个 Action 动态生成的子类，直接调用 Controller 的方法 (没有反射，也不需要创建参数数组).
+ *
+ * <p>注意：动态生成的 class 位于另外的 ClassLoader 中，所以这个 class 必须是 public 的.</p>
+ *
+ * @see ActionMethodInvokerGenerator
+ */
+public abstract class ActionMethodInvoker {
+    /** 使用 ASM 生成的 ActionMethodInvoker 调用 (默认) */
+    public static final String ASM = "asm";
+    /** 使用 java.lang.reflect.Method 调用 */
+    public static final String REFLECT = "reflect";
+
+    public abstract Object invoke(Object action, ArgumentGetter<?>[] getters, RequestContext ctx) throws Exception;
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrick.asm.*;
+import jetbrick.util.ClassUtils;
+import jetbrick.web.mvc.RequestContext;
+import jetbrick.web.mvc.action.annotation.ArgumentGetter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 使用 ASM 为 Action 生成 ActionMethodInvoker，生成的代码相当于：
+ *
+ * <pre>
+ * public Object invoke(Object action, ArgumentGetter[] getters, RequestContext ctx) throws Exception {
+ *     return ((UserController) action).edit((String) getters[0].get(ctx), ((Integer) getters[1].get(ctx)).intValue());
+ * }
+ * </pre>
+ */
+final class ActionMethodInvokerGenerator implements Opcodes {
+    private static final Logger log = LoggerFactory.getLogger(ActionMethodInvokerGenerator.class);
+    private static final String SUPER_CLASS_NAME = Type.getInternalName(ActionMethodInvoker.class);
+    private static final String GETTER_CLASS_NAME = Type.getInternalName(ArgumentGetter.class);
+    private static final String INVOKE_DESC = Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(Object.class), Type.getType(ArgumentGetter[].class), Type.getType(RequestContext.class));
+    private static final String GET_DESC = Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(RequestContext.class));
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /**
+     * 生成 ActionMethodInvoker.
+     *
+     * @return 如果 Controller/参数类型 不是 public 的 (生成的 class 无法访问)，返回 null.
+     */
+    public static ActionMethodInvoker generate(Class<?> controllerClass, Method method) {
+        if (!isAccessible(controllerClass, method)) {
+            log.debug("fallback to reflection for non-public action: {}", method);
+            return null;
+        }
+
+        String className = controllerClass.getName() + "$$ActionMethodInvoker$" + COUNTER.incrementAndGet();
+        byte[] bytes = generateClass(className.replace('.', '/'), controllerClass, method);
+
+        try {
+            Class<?> invokerClass = InvokerClassLoader.get(controllerClass).defineClass(className, bytes);
+            return (ActionMethodInvoker) invokerClass.newInstance();
+        } catch (Throwable e) {
+            log.warn("fallback to reflection, failed to generate ActionMethodInvoker for: " + method, e);
+            return null;
+        }
+    }
+
+    private static byte[] generateClass(String className, Class<?> controllerClass, Method method) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER + ACC_SYNTHETIC, className, null, SUPER_CLASS_NAME, null);
+
+        // constructor
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, SUPER_CLASS_NAME, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // invoke(Object action, ArgumentGetter[] getters, RequestContext ctx)
+        mv = cw.visitMethod(ACC_PUBLIC, "invoke", INVOKE_DESC, null, new String[] { "java/lang/Exception" });
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, Type.getInternalName(controllerClass));
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            mv.visitVarInsn(ALOAD, 2);
+            pushInt(mv, i);
+            mv.visitInsn(AALOAD);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(INVOKEINTERFACE, GETTER_CLASS_NAME, "get", GET_DESC, true);
+            unbox(mv, parameterTypes[i]);
+        }
+
+        boolean isInterface = controllerClass.isInterface();
+        mv.visitMethodInsn(isInterface ? INVOKEINTERFACE : INVOKEVIRTUAL, Type.getInternalName(controllerClass), method.getName(), Type.getMethodDescriptor(method), isInterface);
+        box(mv, method.getReturnType());
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else {
+            mv.visitIntInsn(SIPUSH, value);
+        }
+    }
+
+    // Object -> 参数类型
+    private static void unbox(MethodVisitor mv, Class<?> type) {
+        if (type == Object.class) {
+            return;
+        }
+        if (!type.isPrimitive()) {
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+            return;
+        }
+
+        Class<?> wrapper = ClassUtils.primitiveToWrapper(type);
+        String wrapperName = Type.getInternalName(wrapper);
+        mv.visitTypeInsn(CHECKCAST, wrapperName);
+        mv.visitMethodInsn(INVOKEVIRTUAL, wrapperName, type.getName() + "Value", "()" + Type.getDescriptor(type), false);
+    }
+
+    // 返回值 -> Object
+    private static void box(MethodVisitor mv, Class<?> type) {
+        if (type == void.class) {
+            mv.visitInsn(ACONST_NULL);
+        } else if (type.isPrimitive()) {
+            Class<?> wrapper = ClassUtils.primitiveToWrapper(type);
+            mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(wrapper), "valueOf", "(" + Type.getDescriptor(type) + ")" + Type.getDescriptor(wrapper), false);
+        }
+    }
+
+    // 生成的 class 在另外的 ClassLoader 中，只能访问 public 的 class 和 method
+    private static boolean isAccessible(Class<?> controllerClass, Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) {
+            return false;
+        }
+        if (!isPublicClass(controllerClass)) {
+            return false;
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            if (!isPublicClass(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublicClass(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> cls = type; cls != null; cls = cls.getEnclosingClass()) {
+            if (!Modifier.isPublic(cls.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 以 Controller 的 ClassLoader 作为 parent，每个 parent 只创建一个。
+    // 使用 WeakHashMap 保存，value 为 WeakReference (InvokerClassLoader 强引用了 parent)，避免 redeploy 的时候泄漏 ClassLoader.
+    static final class InvokerClassLoader extends ClassLoader {
+        private static final Map<ClassLoader, WeakReference<InvokerClassLoader>> CLASS_LOADERS = new WeakHashMap<ClassLoader, WeakReference<InvokerClassLoader>>();
+
+        public static InvokerClassLoader get(Class<?> controllerClass) {
+            ClassLoader parent = controllerClass.getClassLoader();
+            if (parent == null) {
+                parent = ActionMethodInvoker.class.getClassLoader();
+            }
+            synchronized (CLASS_LOADERS) {
+                WeakReference<InvokerClassLoader> ref = CLASS_LOADERS.get(parent);
+                InvokerClassLoader loader = (ref == null) ? null : ref.get();
+                if (loader == null) {
+                    loader = new InvokerClassLoader(parent);
+                    CLASS_LOADERS.put(parent, new WeakReference<InvokerClassLoader>(loader));
+                }
+                return loader;
+            }
+        }
+
+        private InvokerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> defineClass(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length, ActionMethodInvokerGenerator.class.getProtectionDomain());
+        }
+    }
+}
@@ -31,6 +31,7 @@ import jetbrick.util.Validate;
 import jetbrick.web.mvc.*;
 import jetbrick.web.mvc.action.annotation.*;
 import jetbrick.web.mvc.multipart.FilePart;
+import jetbrick.web.mvc.multipart.MultipartParser;
 import jetbrick.web.servlet.map.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +54,7 @@ public final class ArgumentGetterResolver {
         register(ServletContext.class, ServletContextArgumentGetter.class);
         register(FilePart.class, FilePartArgumentGetter.class);
         register(FilePart[].class, FilePartsArgumentGetter.class);
+        register(MultipartParser.class, MultipartParserArgumentGetter.class);
         register(RequestAttributeMap.class, RequestAttributeMapArgumentGetter.class);
         register(SessionAttributeMap.class, SessionAttributeMapArgumentGetter.class);
         register(ServletContextAttributeMap.class, ServletContextAttributeMapArgumentGetter.class);
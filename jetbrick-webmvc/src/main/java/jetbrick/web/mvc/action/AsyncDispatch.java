@@ -0,0 +1,44 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在 Controller 或者 Action 上，整个请求的处理过程 (Interceptor + Action + ResultHandler)
+ * 将在 web.async.executor 中执行，而不是在容器的线程中执行.
+ *
+ * <p>适用于阻塞型的 Action (比如 JDBC 调用)，需要 DispatcherFilter 配置 async-supported.</p>
+ *
+ * <pre>
+ * &#64;AsyncDispatch          // 在 executor 中执行
+ * &#64;AsyncDispatch(false)   // 全局设置 web.async.dispatch = true 的情况下，仍然在容器线程中执行
+ * </pre>
+ *
+ * @see jetbrick.web.mvc.AsyncDispatcher
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AsyncDispatch {
+
+    boolean value() default true;
+
+}
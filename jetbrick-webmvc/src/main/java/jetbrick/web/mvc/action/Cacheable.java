@@ -0,0 +1,73 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import java.lang.annotation.*;
+
+/**
+ * 在服务器端缓存 GET 请求的输出 (status + headers + body).
+ *
+ * <p>缓存命中的时候，DispatcherFilter 先执行 Interceptor (不执行 Action)，所有的 Interceptor 都放行之后才输出缓存的内容.
+ * 缓存的 key 由请求路径 (包含 PathVariable)，用户名 (request.getUserPrincipal())，以及 params/headers 中指定的参数组成.
+ * 同一个 key 并发的缓存未命中，只有一个请求会执行 Action，其他的请求等待 (最多 web.cache.wait.timeout 毫秒) 并共享它的结果.</p>
+ *
+ * <p>key 中不包含 session 和 cookie，依赖 session 的内容 (比如当前登录用户的信息) 不能使用 &#64;Cacheable，
+ * 或者在 params/headers 中指定能够区分用户的参数.</p>
+ *
+ * <p>只有 200 并且没有 Set-Cookie 的输出会被缓存，不支持返回 Callable/Future/DeferredResult 的异步 Action.</p>
+ *
+ * <p>设置了 staleWhileRevalidate 的话，缓存过期之后的一段时间内，继续输出旧的内容，
+ * 同时在 web.async.executor 中使用请求的快照 (parameters, headers, attributes，没有 session) 重新执行一次 Action 来刷新缓存，
+ * 当前请求不需要等待.</p>
+ *
+ * <pre>
+ * &#64;Action("/users/{id}")
+ * &#64;Cacheable(ttl = 60, params = { "lang" }, headers = { "Accept" })
+ * &#64;Cacheable(ttl = 10, staleWhileRevalidate = 300)
+ * </pre>
+ *
+ * @see jetbrick.web.mvc.ResponseCache
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Cacheable {
+
+    /**
+     * 缓存的有效期 (秒).
+     */
+    int ttl() default 60;
+
+    /**
+     * 缓存过期之后，继续使用旧的内容的时间 (秒)，0 表示不使用.
+     */
+    int staleWhileRevalidate() default 0;
+
+    /**
+     * 参与计算缓存 key 的请求参数.
+     */
+    String[] params() default {};
+
+    /**
+     * 参与计算缓存 key 的请求头.
+     */
+    String[] headers() default {};
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import java.lang.annotation.*;
+
+/**
+ * 合并相同的 GET 请求 (single-flight)，适用于执行时间比较长的 Action.
+ *
+ * <p>请求路径 (包含 PathVariable)，以及 params/headers 中指定的参数都相同的并发请求，
+ * 只有第一个请求会执行 Interceptor + Action + ResultHandler，其他的请求等待并共享它的输出.
+ * 和 &#64;Cacheable 不同，执行完成之后不保留结果.</p>
+ *
+ * <p>等待的请求在输出共享的内容之前，仍然会执行 Interceptor；等待超过 web.cache.wait.timeout 毫秒的请求会自己执行 Action.
+ * key 中不包含 session 和 cookie，和 &#64;Cacheable 一样，只能用于所有用户都相同的内容.</p>
+ *
+ * <p>只有 200 并且没有 Set-Cookie 的输出会被共享，不支持返回 Callable/Future/DeferredResult 的异步 Action.</p>
+ *
+ * @see Cacheable
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Coalesced {
+
+    /**
+     * 参与计算 key 的请求参数.
+     */
+    String[] params() default {};
+
+    /**
+     * 参与计算 key 的请求头.
+     */
+    String[] headers() default {};
+
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import java.lang.annotation.*;
+
+/**
+ * 为 GET/HEAD 请求提供 Conditional GET 支持.
+ *
+ * <p>所有的 Interceptor 放行之后，在执行 Action 之前调用 ConditionalValidator，如果客户端缓存仍然有效，直接返回 304.
+ * 使用 &#64;Cacheable/&#64;Coalesced 的时候，输出缓存/共享的内容之前也会检查.
+ * 可以标注在 Action 或者 Controller 上，Action 上的优先.</p>
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Conditional {
+
+    Class<? extends ConditionalValidator> value();
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import jetbrick.web.mvc.RequestContext;
+
+/**
+ * 在 Action 执行之前计算 ETag/Last-Modified，用于 Conditional GET (304 Not Modified).
+ *
+ * <p>实现必须足够轻量 (如：查询数据的版本号/修改时间)，否则就失去了提前返回 304 的意义.</p>
+ *
+ * @see Conditional
+ */
+public interface ConditionalValidator {
+
+    /**
+     * 返回完整的 entity-tag (包含引号，如："v1" 或者 W/"v1")，返回 null 表示不使用 ETag.
+     */
+    public String getETag(RequestContext ctx);
+
+    /**
+     * 返回最后修改时间，返回 -1 表示未知.
+     */
+    public long getLastModified(RequestContext ctx);
+
+}
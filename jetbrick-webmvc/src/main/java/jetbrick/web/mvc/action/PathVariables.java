@@ -33,6 +33,11 @@ public final class PathVariables {
         this.size = 0;
     }
 
+    public PathVariables(int capacity) {
+        this.items = new String[capacity << 1];
+        this.size = 0;
+    }
+
     public void add(String name, String value) {
         if ((items.length - size) < 2) {
             items = Arrays.copyOf(items, items.length + 16);
@@ -48,6 +53,16 @@ public final class PathVariables {
         size = 0;
     }
 
+    // 返回已经存放的变量个数
+    public int size() {
+        return size >> 1;
+    }
+
+    // 回退到指定的变量个数 (用于匹配失败时的回溯)
+    public void truncate(int count) {
+        size = count << 1;
+    }
+
     public String getValue(String name) {
         for (int i = 0; i < size; i += 2) {
             if (items[i].equals(name)) {
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在 Action 上，上传的内容不会预先解析 (不创建临时文件)，由 Action 自己以流的方式读取.
+ *
+ * <p>使用 MultipartParser 作为 Action 的参数，按顺序读取每一个 part.
+ * 此时 RequestContext.getFilePart() 等方法返回 null，multipart 中的字段也无法通过 getParameter() 获取.</p>
+ *
+ * <p>MultipartParser 只能在 Action 中使用，请求结束的时候框架会自动调用 close() (Action 也可以提前 close).</p>
+ *
+ * <pre>
+ * &#64;Action
+ * &#64;StreamingUpload
+ * public void upload(MultipartParser parser) throws IOException {
+ *     MultipartParser.Part part;
+ *     while ((part = parser.next()) != null) {
+ *         if (!part.isFormField()) {
+ *             storage.save(part.getFileName(), part.openStream());
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * @see jetbrick.web.mvc.multipart.MultipartParser
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface StreamingUpload {
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import java.lang.annotation.*;
+import jetbrick.web.mvc.multipart.PartConsumer;
+
+/**
+ * 为 Controller 或者 Action 添加 PartConsumer，在解析上传文件的同时处理文件的内容 (在全局的 web.upload.consumers 之后执行).
+ *
+ * <pre>
+ * &#64;Action
+ * &#64;UploadConsumers({ DigestPartConsumer.class, MagicBytesPartConsumer.class })
+ * public void upload(FilePart file) {
+ *     String sha256 = file.getAttribute("digest.SHA-256");
+ *     String contentType = file.getAttribute(MagicBytesPartConsumer.ATTRIBUTE_NAME);
+ *     ...
+ * }
+ * </pre>
+ *
+ * @see jetbrick.web.mvc.multipart.PartConsumer
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface UploadConsumers {
+
+    Class<? extends PartConsumer>[] value();
+
+}
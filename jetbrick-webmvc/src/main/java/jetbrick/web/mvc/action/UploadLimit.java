@@ -0,0 +1,50 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action;
+
+import java.lang.annotation.*;
+
+/**
+ * 修改 Controller 或者 Action 的上传限制 (全局配置为 web.upload.max.*).
+ *
+ * <p>0 表示使用全局配置，小于 0 表示不限制. 超过限制的请求返回 413.</p>
+ *
+ * <pre>
+ * &#64;Action
+ * &#64;UploadLimit(maxFileSize = 10 * 1024 * 1024, maxParts = 5)
+ * public void avatar(FilePart file) { ... }
+ * </pre>
+ *
+ * @see jetbrick.web.mvc.multipart.UploadLimits
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface UploadLimit {
+
+    long maxRequestSize() default 0;
+
+    long maxFileSize() default 0;
+
+    int maxParts() default 0;
+
+    long maxFieldSize() default 0;
+
+}
@@ -23,6 +23,7 @@ import javax.xml.bind.*;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import jetbrick.bean.ParameterInfo;
+import jetbrick.web.mvc.JAXBContextCache;
 import jetbrick.web.mvc.RequestContext;
 
 public final class JAXBElementRequestBodyGetter implements RequestBodyGetter<JAXBElement<?>> {
@@ -35,9 +36,12 @@ public final class JAXBElementRequestBodyGetter implements RequestBodyGetter<JAX
             throw new IllegalStateException("Unable to unmarshal JAXB element, type is null");
         }
 
-        JAXBContext jc = JAXBContext.newInstance(type);
-        Unmarshaller unmarshaler = jc.createUnmarshaller();
-        Source source = new StreamSource(ctx.getRequest().getInputStream());
-        return unmarshaler.unmarshal(source, type);
+        Unmarshaller unmarshaler = JAXBContextCache.borrowUnmarshaller(type);
+        try {
+            Source source = new StreamSource(ctx.getRequest().getInputStream());
+            return unmarshaler.unmarshal(source, type);
+        } finally {
+            JAXBContextCache.release(type, unmarshaler);
+        }
     }
 }
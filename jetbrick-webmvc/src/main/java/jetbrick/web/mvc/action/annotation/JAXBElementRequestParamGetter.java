@@ -24,6 +24,7 @@ import javax.xml.bind.*;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import jetbrick.bean.ParameterInfo;
+import jetbrick.web.mvc.JAXBContextCache;
 import jetbrick.web.mvc.RequestContext;
 
 public final class JAXBElementRequestParamGetter implements RequestParamGetter<JAXBElement<?>> {
@@ -41,9 +42,12 @@ public final class JAXBElementRequestParamGetter implements RequestParamGetter<J
             throw new IllegalStateException("Unable to unmarshal JAXB element, type is null");
         }
 
-        JAXBContext jc = JAXBContext.newInstance(type);
-        Unmarshaller unmarshaler = jc.createUnmarshaller();
-        Source source = new StreamSource(new StringReader(xml));
-        return unmarshaler.unmarshal(source, type);
+        Unmarshaller unmarshaler = JAXBContextCache.borrowUnmarshaller(type);
+        try {
+            Source source = new StreamSource(new StringReader(xml));
+            return unmarshaler.unmarshal(source, type);
+        } finally {
+            JAXBContextCache.release(type, unmarshaler);
+        }
     }
 }
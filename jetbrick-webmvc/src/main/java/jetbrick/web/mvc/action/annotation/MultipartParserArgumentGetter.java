@@ -0,0 +1,50 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.action.annotation;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import jetbrick.util.ExceptionUtils;
+import jetbrick.web.mvc.RequestContext;
+import jetbrick.web.mvc.multipart.MultipartParser;
+
+// 配合 @StreamingUpload 使用，不是 multipart/form-data 请求的话返回 null
+// 返回的 MultipartParser 由 Action 使用 (可以提前 close)，请求结束的时候会自动 close
+public final class MultipartParserArgumentGetter implements TypedArgumentGetter<MultipartParser> {
+
+    @Override
+    public MultipartParser get(RequestContext ctx) {
+        HttpServletRequest request = ctx.getRequest();
+        String boundary = MultipartParser.getBoundary(request.getContentType());
+        if (boundary == null) {
+            return null;
+        }
+        String encoding = request.getCharacterEncoding();
+        // 由 Action 自己读取每一个 part，这里只能限制整个请求的大小 (maxRequestSize)
+        request = ctx.getRouteInfo().getAction().getUploadLimits().wrap(request);
+        try {
+            MultipartParser parser = new MultipartParser(request.getInputStream(), boundary, (encoding == null) ? "ISO-8859-1" : encoding);
+            ctx.closeOnCompletion(parser);
+            return parser;
+        } catch (IOException e) {
+            throw ExceptionUtils.unchecked(e);
+        }
+    }
+}
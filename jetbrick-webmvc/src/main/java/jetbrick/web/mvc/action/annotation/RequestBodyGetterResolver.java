@@ -22,6 +22,7 @@ package jetbrick.web.mvc.action.annotation;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import javax.xml.bind.JAXBElement;
+import javax.xml.stream.XMLStreamReader;
 import jetbrick.ioc.Ioc;
 import jetbrick.web.mvc.WebConfig;
 import org.slf4j.Logger;
@@ -35,6 +36,7 @@ public final class RequestBodyGetterResolver {
     public void initialize() {
         register(Document.class, XmlDocumentRequestBodyGetter.class);
         register(JAXBElement.class, JAXBElementRequestBodyGetter.class);
+        register(XMLStreamReader.class, XmlStreamReaderRequestBodyGetter.class);
     }
 
     public void register(Class<?> cls, Class<?> getterCls) {
@@ -53,6 +55,18 @@ public final class RequestBodyGetterResolver {
 
     @SuppressWarnings("unchecked")
     public <T> RequestBodyGetter<T> resolve(Class<T> cls) {
-        return (RequestBodyGetter<T>) getters.get(cls);
+        RequestBodyGetter<?> getter = getters.get(cls);
+        if (getter == null) {
+            // 查找：使用了已经注册的类的子类
+            for (Map.Entry<Class<?>, RequestBodyGetter<?>> entry : getters.entrySet()) {
+                Class<?> targetClass = entry.getKey();
+                if ((targetClass != Object.class) && targetClass.isAssignableFrom(cls)) {
+                    return (RequestBodyGetter<T>) entry.getValue();
+                }
+            }
+            // 查找：注册在 Object.class 上的通用 getter (如 Gson 绑定任意 POJO)
+            getter = getters.get(Object.class);
+        }
+        return (RequestBodyGetter<T>) getter;
     }
 }
@@ -19,24 +19,21 @@
  */
 package jetbrick.web.mvc.action.annotation;
 
-import javax.xml.parsers.*;
+import javax.xml.parsers.DocumentBuilder;
 import jetbrick.bean.ParameterInfo;
 import jetbrick.web.mvc.RequestContext;
+import jetbrick.web.mvc.XmlDocumentPool;
 import org.w3c.dom.Document;
 
 public final class XmlDocumentRequestBodyGetter implements RequestBodyGetter<Document> {
-    private static final DocumentBuilder builder;
-
-    static {
-        try {
-            builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new IllegalStateException(e);
-        }
-    }
 
     @Override
     public Document get(RequestContext ctx, ParameterInfo parameter) throws Exception {
-        return builder.parse(ctx.getRequest().getInputStream());
+        DocumentBuilder builder = XmlDocumentPool.borrowDocumentBuilder();
+        try {
+            return builder.parse(ctx.getRequest().getInputStream());
+        } finally {
+            XmlDocumentPool.release(builder);
+        }
     }
 }
@@ -20,22 +20,14 @@
 package jetbrick.web.mvc.action.annotation;
 
 import java.io.StringReader;
-import javax.xml.parsers.*;
+import javax.xml.parsers.DocumentBuilder;
 import jetbrick.bean.ParameterInfo;
 import jetbrick.web.mvc.RequestContext;
+import jetbrick.web.mvc.XmlDocumentPool;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 
 public final class XmlDocumentRequestParamGetter implements RequestParamGetter<Document> {
-    private static final DocumentBuilder builder;
-
-    static {
-        try {
-            builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new IllegalStateException(e);
-        }
-    }
 
     @Override
     public Document get(RequestContext ctx, ParameterInfo parameter, String name) throws Exception {
@@ -44,7 +36,12 @@ public final class XmlDocumentRequestParamGetter implements RequestParamGetter<D
             return null;
         }
 
-        InputSource is = new InputSource(new StringReader(xml));
-        return builder.parse(is);
+        DocumentBuilder builder = XmlDocumentPool.borrowDocumentBuilder();
+        try {
+            InputSource is = new InputSource(new StringReader(xml));
+            return builder.parse(is);
+        } finally {
+            XmlDocumentPool.release(builder);
+        }
     }
 }
@@ -26,11 +26,7 @@ import jetbrick.web.mvc.RequestContext;
  *
  * @author Guoqiang Chen
  */
-public abstract class AopInterceptor implements Interceptor {
-
-    @Override
-    public void initialize() {
-    }
+public abstract class AopInterceptor extends ScopedInterceptor {
 
     public abstract void before(RequestContext ctx);
 
@@ -42,8 +38,4 @@ public abstract class AopInterceptor implements Interceptor {
         chain.invoke();
         after(ctx);
     }
-
-    @Override
-    public void destory() {
-    }
 }
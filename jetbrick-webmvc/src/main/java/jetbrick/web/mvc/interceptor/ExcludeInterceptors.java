@@ -0,0 +1,42 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.interceptor;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在 Controller 或者 Action 上，排除指定的 Interceptor.
+ *
+ * <pre>
+ * &#64;ExcludeInterceptors              // 排除所有的 Interceptor
+ * &#64;ExcludeInterceptors(AuthInterceptor.class)
+ * </pre>
+ */
+@Target({ ElementType.TYPE, ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ExcludeInterceptors {
+
+    /**
+     * 需要排除的 Interceptor (包括子类)，为空表示排除所有的 Interceptor.
+     */
+    Class<? extends Interceptor>[] value() default {};
+
+}
@@ -26,25 +26,41 @@ import jetbrick.web.mvc.action.ActionInfo;
 
 /**
  * 依次执行所有的 Intercepter，完成后在执行 action
+ *
+ * <p>executeAction = false 的时候只执行 Intercepter (输出缓存的内容之前检查权限等)，通过 isCompleted() 判断是否所有的 Intercepter 都放行了.</p>
  */
 public final class InterceptorChainImpl implements InterceptorChain {
-    private final List<Interceptor> interceptors;
+    private final Interceptor[] interceptors;
     private final RequestContext ctx;
+    private final boolean executeAction;
     private int currentIndex = 0;
+    private boolean completed;
     private ResultInfo result;
 
     public InterceptorChainImpl(List<Interceptor> interceptors, RequestContext ctx) {
+        this(interceptors.toArray(new Interceptor[interceptors.size()]), ctx);
+    }
+
+    public InterceptorChainImpl(Interceptor[] interceptors, RequestContext ctx) {
+        this(interceptors, ctx, true);
+    }
+
+    public InterceptorChainImpl(Interceptor[] interceptors, RequestContext ctx, boolean executeAction) {
         this.interceptors = interceptors;
         this.ctx = ctx;
+        this.executeAction = executeAction;
     }
 
     @Override
     public void invoke() throws Exception {
-        if (currentIndex < interceptors.size()) {
-            Interceptor interceptor = interceptors.get(currentIndex++);
+        if (currentIndex < interceptors.length) {
+            Interceptor interceptor = interceptors[currentIndex++];
             interceptor.intercept(ctx, this);
         } else {
-            executeAction(ctx);
+            completed = true;
+            if (executeAction) {
+                executeAction(ctx);
+            }
         }
     }
 
@@ -52,6 +68,10 @@ public final class InterceptorChainImpl implements InterceptorChain {
         return result;
     }
 
+    public boolean isCompleted() {
+        return completed;
+    }
+
     private void executeAction(RequestContext ctx) throws Exception {
         ActionInfo action = ctx.getRouteInfo().getAction();
         result = action.execute(ctx);
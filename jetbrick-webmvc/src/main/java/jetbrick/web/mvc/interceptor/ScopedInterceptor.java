@@ -0,0 +1,117 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.interceptor;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+import jetbrick.util.*;
+import jetbrick.web.mvc.action.ActionInfo;
+
+/**
+ * 可以限定作用范围的 Interceptor.
+ *
+ * <p>作用范围在 Action 注册的时候就已经计算完成，运行期间不会再进行匹配.</p>
+ *
+ * <pre>
+ * web.interceptors = $auth
+ * $auth = com.example.AuthInterceptor
+ * $auth.includes = /admin/**, /users/*
+ * $auth.excludes = /admin/login
+ * $auth.annotation = com.example.RequiresLogin
+ * </pre>
+ *
+ * <ul>
+ *   <li>includes: Action 的 URL 模板需要匹配的 pattern (ant 风格，使用逗号分隔)，为空表示所有的 Action</li>
+ *   <li>excludes: 需要排除的 URL 模板 pattern</li>
+ *   <li>annotation: 只作用于 Controller 或者 Action 上标注了此 Annotation 的 Action</li>
+ * </ul>
+ *
+ * @see ExcludeInterceptors
+ */
+public abstract class ScopedInterceptor implements Interceptor {
+    private String[] includes = ArrayUtils.EMPTY_STRING_ARRAY;
+    private String[] excludes = ArrayUtils.EMPTY_STRING_ARRAY;
+    private Class<? extends Annotation> annotation;
+
+    public void setIncludes(String patterns) {
+        this.includes = splitPatterns(patterns);
+    }
+
+    public void setExcludes(String patterns) {
+        this.excludes = splitPatterns(patterns);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void setAnnotation(String className) {
+        className = StringUtils.trimToNull(className);
+        if (className == null) {
+            this.annotation = null;
+            return;
+        }
+
+        Class<?> cls = ClassLoaderUtils.loadClass(className);
+        if (cls == null || !cls.isAnnotation()) {
+            throw new IllegalStateException("Annotation class not found: " + className);
+        }
+        this.annotation = (Class<? extends Annotation>) cls;
+    }
+
+    /**
+     * 判断这个 Interceptor 是否作用于指定的 Action.
+     */
+    public boolean accept(ActionInfo action) {
+        if (annotation != null) {
+            if (action.getMethod().getAnnotation(annotation) == null && action.getControllerClass().getAnnotation(annotation) == null) {
+                return false;
+            }
+        }
+
+        String url = action.getUrlTemplate().getUrl();
+        if (includes.length > 0 && WildcharPathUtils.matchPathOne(url, includes) == -1) {
+            return false;
+        }
+        if (excludes.length > 0 && WildcharPathUtils.matchPathOne(url, excludes) != -1) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public void destory() {
+    }
+
+    private static String[] splitPatterns(String patterns) {
+        List<String> list = new ArrayList<String>(8);
+        if (patterns != null) {
+            for (String pattern : StringUtils.split(patterns, ',')) {
+                pattern = StringUtils.trimToNull(pattern);
+                if (pattern != null) {
+                    list.add(pattern);
+                }
+            }
+        }
+        return list.toArray(new String[list.size()]);
+    }
+}
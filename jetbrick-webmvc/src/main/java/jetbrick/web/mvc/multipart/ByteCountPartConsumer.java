@@ -0,0 +1,48 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+/**
+ * 统计上传文件实际读取的字节数，结果 (Long) 保存在 FilePart 的 "bytes" 属性中.
+ */
+public final class ByteCountPartConsumer implements PartConsumer {
+    public static final String ATTRIBUTE_NAME = "bytes";
+
+    @Override
+    public Stage open(String fieldName, String originalFilename, String contentType) {
+        return new Stage() {
+            private long count;
+
+            @Override
+            public void update(byte[] b, int off, int len) {
+                count += len;
+            }
+
+            @Override
+            public void complete(FilePart filePart) {
+                filePart.setAttribute(ATTRIBUTE_NAME, count);
+            }
+
+            @Override
+            public void abort() {
+            }
+        };
+    }
+}
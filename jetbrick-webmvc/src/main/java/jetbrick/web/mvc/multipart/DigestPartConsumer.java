@@ -0,0 +1,75 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import jetbrick.util.codec.HexUtils;
+
+/**
+ * 计算上传文件的摘要，结果 (小写的 16 进制字符串) 保存在 FilePart 的 "digest.{algorithm}" 属性中.
+ *
+ * <pre>
+ * web.upload.consumers = $sha256
+ * $sha256 = jetbrick.web.mvc.multipart.DigestPartConsumer
+ * $sha256.algorithm = SHA-256
+ *
+ * String sha256 = filePart.getAttribute("digest.SHA-256");
+ * </pre>
+ */
+public final class DigestPartConsumer implements PartConsumer {
+    public static final String ATTRIBUTE_PREFIX = "digest.";
+
+    private String algorithm = "SHA-256";
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public Stage open(String fieldName, String originalFilename, String contentType) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return new Stage() {
+            @Override
+            public void update(byte[] b, int off, int len) {
+                digest.update(b, off, len);
+            }
+
+            @Override
+            public void complete(FilePart filePart) {
+                filePart.setAttribute(ATTRIBUTE_PREFIX + algorithm, HexUtils.encodeHexString(digest.digest()));
+            }
+
+            @Override
+            public void abort() {
+            }
+        };
+    }
+}
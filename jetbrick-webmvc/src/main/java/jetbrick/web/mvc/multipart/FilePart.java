@@ -19,21 +19,32 @@
  */
 package jetbrick.web.mvc.multipart;
 
+
 import java.io.*;
+import java.util.*;
 import jetbrick.io.IoUtils;
 import jetbrick.io.file.FileCopyUtils;
 import jetbrick.io.file.FileMoveUtils;
 import jetbrick.util.FilenameUtils;
-import jetbrick.util.builder.ToStringBuilder;
 
+/**
+ * 上传的文件.
+ *
+ * <p>小于 web.upload.threshold 的文件内容保存在内存中 (不创建临时文件，每个请求合计不超过 web.upload.memory.size)，调用 getDiskFile() 的时候才写入一个临时文件，
+ * 这个临时文件由 delete() 负责删除 (或者被 moveTo() 移走).</p>
+ */
 public final class FilePart {
     private static final String MESSAGE_FILE_MOVED = "File has been moved - cannot be read again";
 
     private final String fieldName;
     private final String originalFileName;
     private final String originalFileExt;
-    private final File diskFile;
     private final long size;
+    private File diskFile;
+    private byte[] content; // 内存中的内容，null 表示保存在 diskFile 中
+    private File spilledFile; // getDiskFile() 从内存中写入的临时文件
+    private Map<String, Object> attributes; // PartConsumer 的处理结果
+    private List<PartConsumer.Stage> completedStages; // 上传失败的时候需要撤销 (如：删除 TeePartConsumer 复制的文件)
 
     public FilePart(String fieldName, String originalFileName, File diskFile) {
         this.fieldName = fieldName;
@@ -43,6 +54,14 @@ public final class FilePart {
         this.size = diskFile.length();
     }
 
+    public FilePart(String fieldName, String originalFileName, byte[] content) {
+        this.fieldName = fieldName;
+        this.originalFileName = originalFileName;
+        this.originalFileExt = FilenameUtils.getFileExtension(originalFileName);
+        this.content = content;
+        this.size = content.length;
+    }
+
     public String getFieldName() {
         return fieldName;
     }
@@ -55,10 +74,64 @@ public final class FilePart {
         return originalFileExt;
     }
 
+    /**
+     * 返回 PartConsumer 的处理结果.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(String name) {
+        return (attributes == null) ? null : (T) attributes.get(name);
+    }
+
+    public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<String, Object>(8);
+        }
+        attributes.put(name, value);
+    }
+
+    public Map<String, Object> getAttributes() {
+        if (attributes == null) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    void setCompletedStages(List<PartConsumer.Stage> completedStages) {
+        this.completedStages = completedStages;
+    }
+
+    // 同一个请求中的其他文件上传失败，撤销 PartConsumer 对这个文件的处理结果
+    void abortCompletedStages() {
+        if (completedStages != null) {
+            for (PartConsumer.Stage stage : completedStages) {
+                stage.abort();
+            }
+            completedStages = null;
+        }
+    }
+
+    /**
+     * 内容是否保存在内存中.
+     */
+    public boolean isInMemory() {
+        return content != null;
+    }
+
+    /**
+     * 返回临时文件，内容保存在内存中的话，先写入到一个临时文件中 (只会写入一次，内存中的内容继续用于读取).
+     */
     public File getDiskFile() {
         if (!available()) {
             throw new IllegalStateException(MESSAGE_FILE_MOVED);
         }
+        if (content != null) {
+            if (spilledFile == null) {
+                File file = UploadUtils.getUniqueTemporaryFile(originalFileName);
+                writeContent(file);
+                spilledFile = file;
+            }
+            return spilledFile;
+        }
         return diskFile;
     }
 
@@ -70,7 +143,15 @@ public final class FilePart {
         if (!available()) {
             throw new IllegalStateException(MESSAGE_FILE_MOVED);
         }
-        diskFile.delete();
+        if (content != null) {
+            content = null;
+            if (spilledFile != null) {
+                spilledFile.delete();
+                spilledFile = null;
+            }
+        } else {
+            diskFile.delete();
+        }
     }
 
     public void moveTo(File destFile) {
@@ -84,7 +165,17 @@ public final class FilePart {
                 dir.mkdirs();
             }
 
-            FileMoveUtils.moveFile(diskFile, destFile);
+            if (content != null) {
+                if (spilledFile != null) {
+                    FileMoveUtils.moveFile(spilledFile, destFile);
+                    spilledFile = null;
+                } else {
+                    writeContent(destFile);
+                }
+                content = null;
+            } else {
+                FileMoveUtils.moveFile(diskFile, destFile);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -101,7 +192,11 @@ public final class FilePart {
                 dir.mkdirs();
             }
 
-            FileCopyUtils.copyFile(diskFile, destFile);
+            if (content != null) {
+                writeContent(destFile);
+            } else {
+                FileCopyUtils.copyFile(diskFile, destFile);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -113,7 +208,11 @@ public final class FilePart {
         }
 
         try {
-            IoUtils.copy(new FileInputStream(diskFile), os);
+            if (content != null) {
+                os.write(content);
+            } else {
+                IoUtils.copy(new FileInputStream(diskFile), os);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -124,6 +223,9 @@ public final class FilePart {
             throw new IllegalStateException(MESSAGE_FILE_MOVED);
         }
 
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
         try {
             return new FileInputStream(diskFile);
         } catch (FileNotFoundException e) {
@@ -135,15 +237,47 @@ public final class FilePart {
         if (!available()) {
             throw new IllegalStateException(MESSAGE_FILE_MOVED);
         }
+        if (content != null) {
+            try {
+                return new String(content, charset);
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+        }
         return IoUtils.toString(diskFile, charset);
     }
 
+    private void writeContent(File destFile) {
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(destFile);
+            os.write(content);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            IoUtils.closeQuietly(os);
+        }
+    }
+
     private boolean available() {
-        return diskFile.exists() && (diskFile.length() == size);
+        if (content != null) {
+            return true;
+        }
+        return diskFile != null && diskFile.exists() && (diskFile.length() == size);
     }
 
+    // 不输出文件的内容
     @Override
     public String toString() {
-        return ToStringBuilder.reflection(this);
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("FilePart[fieldName=").append(fieldName);
+        sb.append(", fileName=").append(originalFileName);
+        Object contentType = getAttribute(MagicBytesPartConsumer.ATTRIBUTE_NAME);
+        if (contentType != null) {
+            sb.append(", contentType=").append(contentType);
+        }
+        sb.append(", size=").append(size);
+        sb.append(", storage=").append(content != null ? "memory" : "disk");
+        return sb.append(']').toString();
     }
 }
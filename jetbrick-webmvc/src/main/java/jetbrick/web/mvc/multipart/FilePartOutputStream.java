@@ -0,0 +1,308 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import jetbrick.web.mvc.BoundedPool;
+import jetbrick.web.mvc.WebConfig;
+
+/**
+ * 用来接收上传文件的内容，不超过 threshold 的内容保存在内存中，超过之后才写入临时文件.
+ * 同一个请求中保存在内存中的内容合计超过 web.upload.memory.size 之后，后面的文件也直接写入临时文件.
+ *
+ * <pre>
+ * FilePartOutputStream out = new FilePartOutputStream(originalFilename);
+ * boolean success = false;
+ * try {
+ *     IoUtils.copy(stream, out);
+ *     success = true;
+ * } finally {
+ *     if (!success) {
+ *         out.abort();
+ *     }
+ * }
+ * FilePart filePart = out.toFilePart(fieldName);
+ * </pre>
+ */
+public final class FilePartOutputStream extends OutputStream implements WritableByteChannel {
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final BoundedPool<byte[]> BUFFER_POOL = new BoundedPool<byte[]>(MAX_POOLED_BUFFERS);
+
+    private final String originalFilename;
+    private final int threshold;
+    private byte[] buffer; // 从池中借用的缓冲区
+    private int count; // 内存中的字节数
+    private long size;
+    private long maxSize = -1; // 小于 0 表示不限制
+    private AtomicLong memoryBudget; // 当前请求剩余可以使用的内存，null 表示不限制
+    private List<PartConsumer.Stage> stages; // 在写入的同时处理文件的内容
+    private File diskFile;
+    private FileOutputStream fos;
+    private FileChannel channel;
+    private boolean closed;
+
+    public FilePartOutputStream(String originalFilename) {
+        this(originalFilename, WebConfig.getUploadThreshold());
+    }
+
+    public FilePartOutputStream(String originalFilename, int threshold) {
+        this.originalFilename = originalFilename;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (prepare(1)) {
+            buffer[count++] = (byte) b;
+        } else {
+            fos.write(b);
+        }
+        size++;
+        if (stages != null) {
+            updateStages(new byte[] { (byte) b }, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (prepare(len)) {
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        } else {
+            fos.write(b, off, len);
+        }
+        size += len;
+        if (stages != null) {
+            updateStages(b, off, len);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int len = src.remaining();
+        ByteBuffer view = (stages == null) ? null : src.duplicate();
+        if (prepare(len)) {
+            src.get(buffer, count, len);
+            count += len;
+        } else {
+            while (src.hasRemaining()) {
+                channel.write(src);
+            }
+        }
+        size += len;
+        if (view != null) {
+            if (view.hasArray()) {
+                updateStages(view.array(), view.arrayOffset() + view.position(), len);
+            } else {
+                byte[] b = new byte[len];
+                view.get(b);
+                updateStages(b, 0, len);
+            }
+        }
+        return len;
+    }
+
+    /**
+     * 设置最大的大小，超过的时候抛出 UploadLimitExceededException.
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    // 同一个请求中的 FilePartOutputStream 共享一个 budget
+    void setMemoryBudget(AtomicLong memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * 添加一个 PartConsumer.Stage，写入的内容同时交给它处理.
+     */
+    public void addStage(PartConsumer.Stage stage) {
+        if (stages == null) {
+            stages = new ArrayList<PartConsumer.Stage>(4);
+        }
+        stages.add(stage);
+    }
+
+    private void updateStages(byte[] b, int off, int len) throws IOException {
+        for (PartConsumer.Stage stage : stages) {
+            stage.update(b, off, len);
+        }
+    }
+
+    // 返回 true 表示写入到内存中
+    private boolean prepare(int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (maxSize >= 0 && size + len > maxSize) {
+            throw new UploadLimitExceededException("maxFileSize", maxSize);
+        }
+        if (fos != null) {
+            return false;
+        }
+        if (count + len <= threshold && reserveMemory(len)) {
+            if (buffer == null) {
+                buffer = borrowBuffer(threshold);
+            }
+            return true;
+        }
+
+        // 超过 threshold，写入到临时文件
+        diskFile = UploadUtils.getUniqueTemporaryFile(originalFilename);
+        fos = new FileOutputStream(diskFile);
+        channel = fos.getChannel();
+        if (count > 0) {
+            fos.write(buffer, 0, count);
+        }
+        releaseMemory();
+        releaseBuffer();
+        return false;
+    }
+
+    private boolean reserveMemory(int len) {
+        if (memoryBudget == null) {
+            return true;
+        }
+        if (memoryBudget.addAndGet(-len) >= 0) {
+            return true;
+        }
+        memoryBudget.addAndGet(len);
+        return false;
+    }
+
+    // 内容写入了临时文件或者被丢弃，归还占用的内存
+    private void releaseMemory() {
+        if (memoryBudget != null && count > 0) {
+            memoryBudget.addAndGet(count);
+        }
+        count = 0;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (fos != null) {
+            fos.close();
+        }
+    }
+
+    /**
+     * 关闭并返回 FilePart.
+     */
+    public FilePart toFilePart(String fieldName) throws IOException {
+        try {
+            close();
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+        FilePart filePart;
+        if (diskFile != null) {
+            filePart = new FilePart(fieldName, originalFilename, diskFile);
+        } else {
+            // 复制一份实际大小的内容，缓冲区马上归还到池中 (FilePart 的生命周期可能超过当前请求)
+            byte[] content = (buffer == null) ? new byte[0] : Arrays.copyOf(buffer, count);
+            releaseBuffer();
+            filePart = new FilePart(fieldName, originalFilename, content);
+        }
+
+        if (stages != null) {
+            boolean success = false;
+            try {
+                for (PartConsumer.Stage stage : stages) {
+                    stage.complete(filePart);
+                }
+                success = true;
+            } finally {
+                if (!success) {
+                    abortStages();
+                    filePart.delete();
+                }
+            }
+            // 后面的文件上传失败的时候，还需要撤销这些 Stage 的结果
+            filePart.setCompletedStages(stages);
+        }
+        return filePart;
+    }
+
+    /**
+     * 出错的时候调用，删除已经创建的临时文件.
+     */
+    public void abort() {
+        closed = true;
+        if (fos != null) {
+            try {
+                fos.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        if (diskFile != null) {
+            diskFile.delete();
+        }
+        releaseMemory();
+        releaseBuffer();
+        abortStages();
+    }
+
+    private void abortStages() {
+        if (stages != null) {
+            for (PartConsumer.Stage stage : stages) {
+                stage.abort();
+            }
+        }
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            BUFFER_POOL.offer(buffer);
+            buffer = null;
+        }
+    }
+
+    private static byte[] borrowBuffer(int size) {
+        byte[] buf;
+        while ((buf = BUFFER_POOL.poll()) != null) {
+            // web.upload.threshold 一般不会变化，长度不一致的直接丢弃
+            if (buf.length == size) {
+                return buf;
+            }
+        }
+        return new byte[size];
+    }
+}
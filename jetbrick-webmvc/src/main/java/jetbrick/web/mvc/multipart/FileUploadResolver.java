@@ -31,9 +31,13 @@ import org.slf4j.LoggerFactory;
 public final class FileUploadResolver {
     private final Logger log = LoggerFactory.getLogger(FileUploadResolver.class);
     private final List<FileUpload> uploads = new ArrayList<FileUpload>();
+    private FileUpload multipartUpload; // 内置的 multipart 实现，最后使用
 
     public void initialize() {
         register(HTML5FileUpload.class);
+
+        Ioc ioc = WebConfig.getIoc();
+        multipartUpload = (FileUpload) ioc.newInstance(MultipartFileUpload.class);
     }
 
     public void register(Class<?> implementClass) {
@@ -47,14 +51,45 @@ public final class FileUploadResolver {
         uploads.add(fileUpload);
     }
 
-    public HttpServletRequest transform(HttpServletRequest request) throws IOException {
+    /**
+     * 返回一个延迟解析的 MultipartRequest，不是上传请求的话返回原始对象.
+     */
+    public HttpServletRequest transform(HttpServletRequest request, UploadLimits limits, List<PartConsumer> consumers) {
+        if (!isMultipart(request)) {
+            return request;
+        }
+        return new MultipartRequest(request, this, limits, consumers);
+    }
+
+    // multipart/* 或者 HTML5 的上传 (Content-Disposition)
+    public boolean isMultipart(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.regionMatches(true, 0, "multipart/", 0, 10)) {
+            return true;
+        }
+        return request.getHeader("Content-Disposition") != null;
+    }
+
+    /**
+     * 读取并解析上传的内容，没有对应的 FileUpload 的话返回 null.
+     */
+    public MultipartRequest parse(HttpServletRequest request, UploadLimits limits, List<PartConsumer> consumers) throws IOException {
+        // FileUpload 中使用 UploadLimits.get(request) 和 UploadUtils.newFilePartOutputStream() 获取
+        request.setAttribute(UploadUtils.KEY_CONSUMERS_IN_REQUEST, consumers);
+        request = limits.wrap(request);
         for (FileUpload upload : uploads) {
             MultipartRequest req = upload.transform(request);
             if (req != null) {
                 return req;
             }
         }
-        // 没有找到返回 原始对象
-        return request;
+        // 没有其他的实现处理 (如：CommonsFileUpload)，使用内置的实现
+        if (multipartUpload != null) {
+            MultipartRequest req = multipartUpload.transform(request);
+            if (req != null) {
+                return req;
+            }
+        }
+        return null;
     }
 }
@@ -40,19 +40,22 @@ public final class HTML5FileUpload implements FileUpload {
         originalFilename = StringUtils.remove(originalFilename, "\"");
         originalFilename = URLDecoder.decode(originalFilename, "UTF-8");
 
-        File diskFile = UploadUtils.getUniqueTemporaryFile(originalFilename);
         InputStream fis = request.getInputStream();
-        OutputStream fos = new FileOutputStream(diskFile);
+        FilePartOutputStream fos = UploadUtils.newFilePartOutputStream(request, "file", originalFilename, request.getContentType());
+        boolean success = false;
 
         try {
             IoUtils.copy(fis, fos);
+            success = true;
         } finally {
             IoUtils.closeQuietly(fis);
-            IoUtils.closeQuietly(fos);
+            if (!success) {
+                fos.abort();
+            }
         }
 
         MultipartRequest req = new MultipartRequest(request);
-        FilePart filePart = new FilePart("file", originalFilename, diskFile);
+        FilePart filePart = fos.toFilePart("file");
         req.addFile(filePart);
 
         return req;
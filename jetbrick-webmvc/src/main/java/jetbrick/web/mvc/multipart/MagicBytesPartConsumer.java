@@ -0,0 +1,92 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+import java.util.Arrays;
+
+/**
+ * 根据文件开头的 magic bytes 检测文件的实际类型 (不信任客户端提交的 Content-Type)，
+ * 结果保存在 FilePart 的 "magic.contentType" 属性中，无法识别的话不设置.
+ */
+public final class MagicBytesPartConsumer implements PartConsumer {
+    public static final String ATTRIBUTE_NAME = "magic.contentType";
+
+    private static final int HEADER_SIZE = 16;
+
+    // { contentType, offset, magic bytes }
+    private static final Object[][] SIGNATURES = {
+        { "image/png", 0, new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' } },
+        { "image/jpeg", 0, new byte[] { (byte) 0xff, (byte) 0xd8, (byte) 0xff } },
+        { "image/gif", 0, new byte[] { 'G', 'I', 'F', '8' } },
+        { "image/webp", 8, new byte[] { 'W', 'E', 'B', 'P' } },
+        { "image/bmp", 0, new byte[] { 'B', 'M' } },
+        { "image/tiff", 0, new byte[] { 'I', 'I', '*', 0 } },
+        { "image/tiff", 0, new byte[] { 'M', 'M', 0, '*' } },
+        { "application/pdf", 0, new byte[] { '%', 'P', 'D', 'F', '-' } },
+        { "application/zip", 0, new byte[] { 'P', 'K', 3, 4 } },
+        { "application/gzip", 0, new byte[] { 0x1f, (byte) 0x8b } },
+        { "application/x-7z-compressed", 0, new byte[] { '7', 'z', (byte) 0xbc, (byte) 0xaf, 0x27, 0x1c } },
+        { "video/mp4", 4, new byte[] { 'f', 't', 'y', 'p' } },
+        { "audio/mpeg", 0, new byte[] { 'I', 'D', '3' } },
+    };
+
+    @Override
+    public Stage open(String fieldName, String originalFilename, String contentType) {
+        return new Stage() {
+            private final byte[] header = new byte[HEADER_SIZE];
+            private int count;
+
+            @Override
+            public void update(byte[] b, int off, int len) {
+                if (count < HEADER_SIZE) {
+                    int n = Math.min(len, HEADER_SIZE - count);
+                    System.arraycopy(b, off, header, count, n);
+                    count += n;
+                }
+            }
+
+            @Override
+            public void complete(FilePart filePart) {
+                String detected = detect(header, count);
+                if (detected != null) {
+                    filePart.setAttribute(ATTRIBUTE_NAME, detected);
+                }
+            }
+
+            @Override
+            public void abort() {
+            }
+        };
+    }
+
+    /**
+     * 根据文件开头的内容检测文件类型，无法识别的话返回 null.
+     */
+    public static String detect(byte[] header, int length) {
+        for (Object[] signature : SIGNATURES) {
+            int offset = (Integer) signature[1];
+            byte[] magic = (byte[]) signature[2];
+            if (offset + magic.length <= length && Arrays.equals(magic, Arrays.copyOfRange(header, offset, offset + magic.length))) {
+                return (String) signature[0];
+            }
+        }
+        return null;
+    }
+}
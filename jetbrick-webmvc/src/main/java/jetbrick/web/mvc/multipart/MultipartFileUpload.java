@@ -0,0 +1,89 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * 内置的 multipart/form-data 上传实现 (基于 MultipartParser)，不需要 commons-fileupload.
+ */
+public final class MultipartFileUpload implements FileUpload {
+
+    @Override
+    public MultipartRequest transform(HttpServletRequest request) throws IOException {
+        String boundary = MultipartParser.getBoundary(request.getContentType());
+        if (boundary == null) {
+            return null;
+        }
+
+        String encoding = request.getCharacterEncoding();
+        if (encoding == null) {
+            encoding = "ISO-8859-1";
+        }
+
+        UploadLimits limits = UploadLimits.get(request);
+        MultipartRequest req = new MultipartRequest(request);
+        int count = 0;
+        MultipartParser parser = new MultipartParser(request.getInputStream(), boundary, encoding);
+        boolean success = false;
+        try {
+            MultipartParser.Part part;
+            while ((part = parser.next()) != null) {
+                limits.checkPartCount(++count);
+                String fieldName = part.getFieldName();
+                if (fieldName == null) {
+                    continue;
+                }
+                if (part.isFormField()) {
+                    req.setParameter(fieldName, limits.readField(part.openStream(), encoding));
+                } else {
+                    String originalFilename = part.getFileName();
+                    if (originalFilename.length() == 0) {
+                        continue;
+                    }
+                    // 小文件保存在内存中，大文件直接从缓冲区写入 FileChannel
+                    FilePartOutputStream fos = UploadUtils.newFilePartOutputStream(request, fieldName, originalFilename, part.getContentType());
+                    boolean completed = false;
+                    try {
+                        part.transferTo(fos);
+                        completed = true;
+                    } finally {
+                        if (!completed) {
+                            fos.abort();
+                        }
+                    }
+
+                    FilePart filePart = fos.toFilePart(fieldName);
+                    req.addFile(filePart);
+                }
+            }
+            success = true;
+        } finally {
+            parser.close();
+            if (!success) {
+                UploadUtils.discardFileParts(req.getFiles());
+            }
+        }
+
+        return req;
+    }
+
+}
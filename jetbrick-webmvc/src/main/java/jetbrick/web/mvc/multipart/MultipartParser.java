@@ -0,0 +1,465 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import jetbrick.io.stream.UnsafeByteArrayOutputStream;
+import jetbrick.web.mvc.BoundedPool;
+
+/**
+ * 流式的 multipart/form-data 解析器，不依赖第三方库.
+ *
+ * <p>使用 Boyer-Moore-Horspool 算法在缓冲区中查找 boundary，文件内容直接从缓冲区写入 FileChannel，不需要额外的复制.
+ * 缓冲区在 close() 之后归还到池中重复使用 (作为 &#64;StreamingUpload Action 的参数时，请求结束的时候会自动 close).</p>
+ *
+ * <pre>
+ * MultipartParser parser = new MultipartParser(request.getInputStream(), boundary, encoding);
+ * try {
+ *     MultipartParser.Part part;
+ *     while ((part = parser.next()) != null) {
+ *         ... // 没有读取完的 part 会被自动跳过
+ *     }
+ * } finally {
+ *     parser.close();
+ * }
+ * </pre>
+ */
+public final class MultipartParser implements Closeable {
+    public static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 32;
+    private static final BoundedPool<byte[]> BUFFER_POOL = new BoundedPool<byte[]>(MAX_POOLED_BUFFERS);
+
+    private final InputStream in;
+    private final String encoding;
+    private final byte[] delimiter; // CRLF + "--" + boundary
+    private final int[] shifts; // Boyer-Moore-Horspool 的跳转表
+    private byte[] buf;
+    private int head; // 没有读取的数据的开始位置
+    private int tail; // 有效数据的结束位置
+    private int scanFrom; // 下次查找 delimiter 的开始位置
+    private int delimiterPos = -1; // 当前 part 的结束位置，-1 表示还没有找到
+    private boolean eof;
+    private boolean finished; // 已经读到最后的 boundary
+    private Part current;
+
+    public MultipartParser(InputStream in, String boundary, String encoding) {
+        this.in = in;
+        this.encoding = encoding;
+        try {
+            this.delimiter = ("\r\n--" + boundary).getBytes("ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        if (delimiter.length > BUFFER_SIZE / 4) {
+            throw new IllegalArgumentException("The multipart boundary is too long");
+        }
+
+        int length = delimiter.length;
+        this.shifts = new int[256];
+        Arrays.fill(shifts, length);
+        for (int i = 0; i < length - 1; i++) {
+            shifts[delimiter[i] & 0xff] = length - 1 - i;
+        }
+
+        this.buf = borrowBuffer();
+        // 第一个 boundary 前面没有 CRLF，补上之后就可以统一处理 (boundary 之前的内容作为 preamble 跳过)
+        buf[0] = '\r';
+        buf[1] = '\n';
+        tail = 2;
+    }
+
+    /**
+     * 从 Content-Type 中获取 boundary，不是 multipart/form-data 的话返回 null.
+     */
+    public static String getBoundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase().startsWith("multipart/form-data")) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.regionMatches(true, 0, "boundary=", 0, 9)) {
+                String boundary = param.substring(9).trim();
+                if (boundary.length() > 1 && boundary.charAt(0) == '"' && boundary.charAt(boundary.length() - 1) == '"') {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+                return boundary.length() == 0 ? null : boundary;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 返回下一个 part，没有的话返回 null.
+     */
+    public Part next() throws IOException {
+        if (finished) {
+            return null;
+        }
+
+        // 跳过 preamble 或者前一个 part 没有读取的内容
+        skipBody();
+        head += delimiter.length;
+        delimiterPos = -1;
+        current = null;
+
+        ensure(2);
+        if (buf[head] == '-' && buf[head + 1] == '-') {
+            finished = true; // close-delimiter
+            return null;
+        }
+        // 忽略 transport-padding
+        while (buf[head] == ' ' || buf[head] == '\t') {
+            head++;
+            ensure(2);
+        }
+        if (buf[head] != '\r' || buf[head + 1] != '\n') {
+            throw new IOException("Malformed multipart stream: missing CRLF after boundary");
+        }
+        head += 2;
+
+        Map<String, String> headers = readHeaders();
+        scanFrom = head;
+        current = new Part(headers);
+        return current;
+    }
+
+    @Override
+    public void close() {
+        if (buf != null) {
+            releaseBuffer(buf);
+            buf = null;
+        }
+    }
+
+    // 返回当前 part 可以直接读取的字节数，0 表示当前 part 已经结束
+    private int readable() throws IOException {
+        while (true) {
+            if (delimiterPos >= 0) {
+                return delimiterPos - head;
+            }
+            int pos = indexOfDelimiter();
+            if (pos >= 0) {
+                delimiterPos = pos;
+                return pos - head;
+            }
+            // 最后的 delimiter.length - 1 个字节可能是 delimiter 的一部分
+            int safe = tail - head - (delimiter.length - 1);
+            if (safe > 0) {
+                return safe;
+            }
+            if (eof) {
+                throw new EOFException("Malformed multipart stream: unexpected end of stream");
+            }
+            fill();
+        }
+    }
+
+    // Boyer-Moore-Horspool
+    private int indexOfDelimiter() {
+        byte[] pattern = delimiter;
+        int last = pattern.length - 1;
+        int i = Math.max(scanFrom, head);
+        while (i + last < tail) {
+            int j = last;
+            while (buf[i + j] == pattern[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += shifts[buf[i + last] & 0xff];
+        }
+        scanFrom = i;
+        return -1;
+    }
+
+    private void skipBody() throws IOException {
+        int n;
+        while ((n = readable()) > 0) {
+            head += n;
+        }
+    }
+
+    // 保证缓冲区中至少有 n 个字节
+    private void ensure(int n) throws IOException {
+        while (tail - head < n) {
+            if (eof) {
+                throw new EOFException("Malformed multipart stream: unexpected end of stream");
+            }
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        if (head > 0) {
+            int length = tail - head;
+            System.arraycopy(buf, head, buf, 0, length);
+            scanFrom = Math.max(scanFrom - head, 0);
+            tail = length;
+            head = 0;
+        }
+        int n = in.read(buf, tail, buf.length - tail);
+        if (n < 0) {
+            eof = true;
+        } else {
+            tail += n;
+        }
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        int size = 0;
+        while (true) {
+            int end = indexOfCRLF(head);
+            while (end < 0) {
+                if (tail - head > MAX_HEADER_SIZE) {
+                    throw new IOException("Malformed multipart stream: part headers are too large");
+                }
+                int scanned = tail - head;
+                ensure(scanned + 1);
+                end = indexOfCRLF(head + Math.max(scanned - 1, 0));
+            }
+            int length = end - head;
+            size += length + 2;
+            if (size > MAX_HEADER_SIZE) {
+                throw new IOException("Malformed multipart stream: part headers are too large");
+            }
+            if (length == 0) {
+                head += 2;
+                return headers;
+            }
+            String line = new String(buf, head, length, encoding);
+            head = end + 2;
+
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    private int indexOfCRLF(int from) {
+        for (int i = from; i < tail - 1; i++) {
+            if (buf[i] == '\r' && buf[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] borrowBuffer() {
+        byte[] buf = BUFFER_POOL.poll();
+        return (buf == null) ? new byte[BUFFER_SIZE] : buf;
+    }
+
+    private static void releaseBuffer(byte[] buf) {
+        BUFFER_POOL.offer(buf);
+    }
+
+    /**
+     * multipart 中的一个 part，内容只能顺序读取一次.
+     */
+    public final class Part {
+        private final Map<String, String> headers;
+        private final String fieldName;
+        private final String fileName;
+        private InputStream stream;
+
+        Part(Map<String, String> headers) {
+            this.headers = headers;
+            String disposition = headers.get("Content-Disposition");
+            this.fieldName = getDispositionParameter(disposition, "name");
+            this.fileName = getDispositionParameter(disposition, "filename");
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        // 返回 null 表示是普通的表单字段
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getContentType() {
+            return headers.get("Content-Type");
+        }
+
+        public boolean isFormField() {
+            return fileName == null;
+        }
+
+        public InputStream openStream() {
+            if (stream == null) {
+                stream = new PartInputStream(this);
+            }
+            return stream;
+        }
+
+        /**
+         * 将内容直接从缓冲区写入 channel (如：FileChannel).
+         */
+        public long transferTo(WritableByteChannel channel) throws IOException {
+            checkCurrent(this);
+            long total = 0;
+            int n;
+            while ((n = readable()) > 0) {
+                ByteBuffer bb = ByteBuffer.wrap(buf, head, n);
+                while (bb.hasRemaining()) {
+                    channel.write(bb);
+                }
+                head += n;
+                total += n;
+            }
+            return total;
+        }
+
+        public String getString(String charset) throws IOException {
+            checkCurrent(this);
+            UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream(256);
+            int n;
+            while ((n = readable()) > 0) {
+                out.write(buf, head, n);
+                head += n;
+            }
+            return out.toString(charset);
+        }
+    }
+
+    private void checkCurrent(Part part) {
+        if (part != current) {
+            throw new IllegalStateException("The part has already been skipped");
+        }
+    }
+
+    final class PartInputStream extends InputStream {
+        private final Part part;
+
+        PartInputStream(Part part) {
+            this.part = part;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (part != current || readable() == 0) {
+                return -1;
+            }
+            return buf[head++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (part != current) {
+                return -1;
+            }
+            int n = readable();
+            if (n == 0) {
+                return -1;
+            }
+            n = Math.min(n, len);
+            System.arraycopy(buf, head, b, off, n);
+            head += n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (part != current) {
+                return 0;
+            }
+            return Math.max(Math.min(tail - head, (delimiterPos >= 0 ? delimiterPos : tail) - head), 0);
+        }
+    }
+
+    // 解析 Content-Disposition 中的参数，支持 quoted-string 和 RFC 5987 的 filename*
+    static String getDispositionParameter(String disposition, String name) {
+        if (disposition == null) {
+            return null;
+        }
+        String extended = null;
+        String value = null;
+        int i = disposition.indexOf(';');
+        int length = disposition.length();
+        while (i >= 0 && i < length) {
+            i++;
+            while (i < length && disposition.charAt(i) == ' ') {
+                i++;
+            }
+            int eq = disposition.indexOf('=', i);
+            if (eq < 0) {
+                break;
+            }
+            String key = disposition.substring(i, eq).trim();
+            i = eq + 1;
+            StringBuilder sb = new StringBuilder();
+            if (i < length && disposition.charAt(i) == '"') {
+                i++;
+                while (i < length) {
+                    char c = disposition.charAt(i++);
+                    if (c == '\\' && i < length) {
+                        sb.append(disposition.charAt(i++));
+                    } else if (c == '"') {
+                        break;
+                    } else {
+                        sb.append(c);
+                    }
+                }
+                i = disposition.indexOf(';', i);
+            } else {
+                int end = disposition.indexOf(';', i);
+                sb.append(disposition, i, end < 0 ? length : end);
+                i = end;
+            }
+
+            if (key.equalsIgnoreCase(name)) {
+                value = sb.toString().trim();
+            } else if (key.equalsIgnoreCase(name + "*")) {
+                extended = decodeExtendedValue(sb.toString().trim());
+            }
+        }
+        return (extended != null) ? extended : value;
+    }
+
+    // charset'lang'pct-encoded
+    private static String decodeExtendedValue(String value) {
+        int first = value.indexOf('\'');
+        int second = (first < 0) ? -1 : value.indexOf('\'', first + 1);
+        if (second < 0) {
+            return null;
+        }
+        try {
+            String charset = value.substring(0, first);
+            return java.net.URLDecoder.decode(value.substring(second + 1).replace("+", "%2B"), charset.length() == 0 ? "UTF-8" : charset);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -19,6 +19,7 @@
  */
 package jetbrick.web.mvc.multipart;
 
+import java.io.IOException;
 import java.util.*;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
@@ -31,16 +32,57 @@ public final class MultipartRequest extends HttpServletRequestWrapper {
     private Map<String, String[]> parameters = new HashMap<String, String[]>();
     private List<FilePart> files = new ArrayList<FilePart>(8);
 
+    private FileUploadResolver resolver; // 不为 null 表示还没有解析
+    private UploadLimits limits;
+    private List<PartConsumer> consumers;
+
     public MultipartRequest(HttpServletRequest request) {
         super(request);
     }
 
+    /**
+     * 延迟解析：第一次访问 multipart 中的参数或者文件的时候，才使用 FileUploadResolver 解析请求.
+     */
+    public MultipartRequest(HttpServletRequest request, FileUploadResolver resolver, UploadLimits limits, List<PartConsumer> consumers) {
+        super(request);
+        this.resolver = resolver;
+        this.limits = limits;
+        this.consumers = consumers;
+    }
+
+    /**
+     * 是否已经解析 (读取过请求的内容).
+     */
+    public boolean isParsed() {
+        return resolver == null;
+    }
+
+    private void parse() {
+        if (resolver == null) {
+            return;
+        }
+        FileUploadResolver fileUploadResolver = resolver;
+        resolver = null;
+
+        MultipartRequest req;
+        try {
+            req = fileUploadResolver.parse((HttpServletRequest) getRequest(), limits, consumers);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to parse multipart request", e);
+        }
+        if (req != null) {
+            parameters = req.parameters;
+            files = req.files;
+        }
+    }
+
     /**
      * <p> Sets a parameter for this request.  The parameter is actually
      * separate from the request parameters, but calling on the getParameter()
      * methods of this class will work as if they weren't. </p>
      */
     public void setParameter(String name, String value) {
+        parse();
         String[] values = parameters.get(name);
         if (values == null) {
             values = new String[] { value };
@@ -63,6 +105,7 @@ public final class MultipartRequest extends HttpServletRequestWrapper {
     public String getParameter(String name) {
         String value = getRequest().getParameter(name);
         if (value == null) {
+            parse();
             String[] values = parameters.get(name);
             if (values != null && values.length > 0) {
                 value = values[0];
@@ -79,6 +122,7 @@ public final class MultipartRequest extends HttpServletRequestWrapper {
      */
     @Override
     public Enumeration<String> getParameterNames() {
+        parse();
         Enumeration<String> baseParams = getRequest().getParameterNames();
         List<String> list = new ArrayList<String>();
         while (baseParams.hasMoreElements()) {
@@ -104,6 +148,7 @@ public final class MultipartRequest extends HttpServletRequestWrapper {
     public String[] getParameterValues(String name) {
         String[] values = getRequest().getParameterValues(name);
         if (values == null) {
+            parse();
             values = parameters.get(name);
         }
         return values;
@@ -116,16 +161,19 @@ public final class MultipartRequest extends HttpServletRequestWrapper {
      */
     @Override
     public Map<String, String[]> getParameterMap() {
+        parse();
         Map<String, String[]> map = new HashMap<String, String[]>(parameters);
         map.putAll(getRequest().getParameterMap());
         return map;
     }
 
     public void addFile(FilePart file) {
+        parse();
         files.add(file);
     }
 
     public FilePart getFile(String name) {
+        parse();
         for (FilePart file : files) {
             if (file.getFieldName().equals(name)) {
                 return file;
@@ -135,6 +183,7 @@ public final class MultipartRequest extends HttpServletRequestWrapper {
     }
 
     public List<FilePart> getFiles() {
+        parse();
         return Collections.unmodifiableList(files);
     }
 }
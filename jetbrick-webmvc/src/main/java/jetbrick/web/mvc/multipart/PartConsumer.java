@@ -0,0 +1,61 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+import java.io.IOException;
+
+/**
+ * 在解析上传文件的同时处理文件的内容 (如：计算摘要，检测文件类型，转发到其他存储)，文件内容只需要读取一次.
+ *
+ * <p>可以使用 web.upload.consumers 全局注册，或者使用 &#64;UploadConsumers 注册到单个 Action.
+ * 处理的结果使用 FilePart.setAttribute() 保存到 FilePart 中.</p>
+ *
+ * <p>PartConsumer 是单例，每个文件的状态保存在 open() 返回的 Stage 中.</p>
+ *
+ * @see jetbrick.web.mvc.action.UploadConsumers
+ */
+public interface PartConsumer {
+
+    /**
+     * 文件开始的时候调用，返回 null 表示不处理这个文件.
+     */
+    public Stage open(String fieldName, String originalFilename, String contentType) throws IOException;
+
+    public interface Stage {
+
+        /**
+         * 处理一段文件内容，按照上传的顺序调用.
+         */
+        public void update(byte[] b, int off, int len) throws IOException;
+
+        /**
+         * 文件读取完成，将处理结果保存到 FilePart 中.
+         */
+        public void complete(FilePart filePart) throws IOException;
+
+        /**
+         * 上传失败的时候调用，释放资源.
+         *
+         * <p>同一个请求中后面的文件上传失败的话，已经 complete() 的 Stage 也会被调用，
+         * 这时需要删除已经创建的内容 (如：复制的文件)，可能会被调用多次.</p>
+         */
+        public void abort();
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+import java.io.*;
+import jetbrick.io.IoUtils;
+import jetbrick.util.FilenameUtils;
+import jetbrick.util.RandomStringUtils;
+import jetbrick.util.StringUtils;
+
+/**
+ * 在解析的同时将上传文件复制一份到指定的目标，结果 (File) 保存在 FilePart 的 "tee.file" 属性中.
+ *
+ * <p>默认写入到 dir 目录中 (随机的文件名)，可以继承并覆盖 openDestination() 转发到其他存储.
+ * 上传失败的时候 (包括同一个请求中后面的文件上传失败)，已经写入的目标文件会被删除.</p>
+ *
+ * <pre>
+ * web.upload.consumers = $tee
+ * $tee = jetbrick.web.mvc.multipart.TeePartConsumer
+ * $tee.dir = /data/uploads
+ * </pre>
+ */
+public class TeePartConsumer implements PartConsumer {
+    public static final String ATTRIBUTE_NAME = "tee.file";
+
+    private File dir;
+
+    public void setDir(File dir) {
+        this.dir = dir;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    @Override
+    public Stage open(String fieldName, String originalFilename, String contentType) throws IOException {
+        final File destFile = getDestinationFile(fieldName, originalFilename);
+        final OutputStream out = openDestination(destFile, fieldName, originalFilename, contentType);
+        if (out == null) {
+            return null;
+        }
+
+        return new Stage() {
+            @Override
+            public void update(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void complete(FilePart filePart) throws IOException {
+                out.close();
+                if (destFile != null) {
+                    filePart.setAttribute(ATTRIBUTE_NAME, destFile);
+                }
+            }
+
+            @Override
+            public void abort() {
+                IoUtils.closeQuietly(out);
+                if (destFile != null) {
+                    destFile.delete();
+                }
+            }
+        };
+    }
+
+    /**
+     * 返回目标文件，不写入到文件中的话 (覆盖 openDestination) 可以返回 null.
+     */
+    protected File getDestinationFile(String fieldName, String originalFilename) {
+        if (dir == null) {
+            return null;
+        }
+        String fileName = RandomStringUtils.randomAlphanumeric(16);
+        String fileExt = FilenameUtils.getFileExtension(originalFilename);
+        if (StringUtils.isNotEmpty(fileExt)) {
+            fileName = fileName + "." + fileExt;
+        }
+        return new File(dir, fileName);
+    }
+
+    /**
+     * 打开目标的输出流，返回 null 表示不处理这个文件.
+     */
+    protected OutputStream openDestination(File destFile, String fieldName, String originalFilename, String contentType) throws IOException {
+        if (destFile == null) {
+            return null;
+        }
+        File parent = destFile.getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        return new BufferedOutputStream(new FileOutputStream(destFile), 8192);
+    }
+}
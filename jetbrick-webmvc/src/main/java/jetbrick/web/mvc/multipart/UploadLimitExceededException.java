@@ -0,0 +1,62 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+import jetbrick.web.mvc.WebException;
+
+/**
+ * 上传的内容超过了 UploadLimits 的限制，默认返回 413 (Request Entity Too Large).
+ */
+public final class UploadLimitExceededException extends WebException {
+    private static final long serialVersionUID = 1L;
+
+    private final String limitName;
+    private final long limit;
+
+    public UploadLimitExceededException(String limitName, long limit) {
+        super("Upload " + limitName + " exceeds the limit: " + limit);
+        this.limitName = limitName;
+        this.limit = limit;
+    }
+
+    // maxRequestSize, maxFileSize, maxParts, maxFieldSize
+    public String getLimitName() {
+        return limitName;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * 查找异常链中的 UploadLimitExceededException (可能被包装过，如：延迟解析的时候被包装成 IllegalStateException).
+     *
+     * @return 没有找到返回 null.
+     */
+    public static UploadLimitExceededException find(Throwable e) {
+        while (e != null) {
+            if (e instanceof UploadLimitExceededException) {
+                return (UploadLimitExceededException) e;
+            }
+            e = e.getCause();
+        }
+        return null;
+    }
+}
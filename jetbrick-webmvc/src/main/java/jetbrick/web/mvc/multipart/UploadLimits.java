@@ -0,0 +1,205 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.multipart;
+
+import java.io.*;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import jetbrick.io.IoUtils;
+import jetbrick.io.stream.UnsafeByteArrayOutputStream;
+import jetbrick.web.mvc.WebConfig;
+
+/**
+ * 上传的限制，小于 0 表示不限制.
+ *
+ * <ul>
+ * <li>maxRequestSize: 整个请求的大小，有 Content-Length 的话在读取之前就拒绝</li>
+ * <li>maxFileSize: 单个文件的大小</li>
+ * <li>maxParts: part 的个数 (包括文件和字段)</li>
+ * <li>maxFieldSize: 单个字段的大小 (字段保存在内存中)</li>
+ * </ul>
+ *
+ * <p>全局的配置为 web.upload.max.*，可以使用 &#64;UploadLimit 对单个 Action 进行修改.
+ * 超过限制的时候抛出 UploadLimitExceededException，读取过程中已经创建的临时文件会被删除.</p>
+ *
+ * @see jetbrick.web.mvc.action.UploadLimit
+ */
+public final class UploadLimits {
+    public static final String KEY_IN_REQUEST = "jetbrick.mvc.upload.limits";
+    public static final UploadLimits UNLIMITED = new UploadLimits(-1, -1, -1, -1);
+
+    private final long maxRequestSize;
+    private final long maxFileSize;
+    private final int maxParts;
+    private final long maxFieldSize;
+
+    public UploadLimits(long maxRequestSize, long maxFileSize, int maxParts, long maxFieldSize) {
+        this.maxRequestSize = maxRequestSize;
+        this.maxFileSize = maxFileSize;
+        this.maxParts = maxParts;
+        this.maxFieldSize = maxFieldSize;
+    }
+
+    /**
+     * 返回当前请求使用的限制 (FileUpload 实现中使用).
+     */
+    public static UploadLimits get(HttpServletRequest request) {
+        UploadLimits limits = (UploadLimits) request.getAttribute(KEY_IN_REQUEST);
+        if (limits == null) {
+            limits = WebConfig.getUploadLimits();
+        }
+        return (limits == null) ? UNLIMITED : limits;
+    }
+
+    /**
+     * 使用新的值覆盖，0 表示使用原来的值.
+     */
+    public UploadLimits merge(long maxRequestSize, long maxFileSize, int maxParts, long maxFieldSize) {
+        return new UploadLimits(maxRequestSize == 0 ? this.maxRequestSize : maxRequestSize, //
+                                maxFileSize == 0 ? this.maxFileSize : maxFileSize, //
+                                maxParts == 0 ? this.maxParts : maxParts, //
+                                maxFieldSize == 0 ? this.maxFieldSize : maxFieldSize);
+    }
+
+    public long getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public int getMaxParts() {
+        return maxParts;
+    }
+
+    public long getMaxFieldSize() {
+        return maxFieldSize;
+    }
+
+    /**
+     * 根据 Content-Length 检查请求的大小，不需要读取请求的内容.
+     */
+    public void checkContentLength(HttpServletRequest request) {
+        if (maxRequestSize < 0) {
+            return;
+        }
+        String contentLength = request.getHeader("Content-Length");
+        if (contentLength != null) {
+            try {
+                if (Long.parseLong(contentLength.trim()) > maxRequestSize) {
+                    throw new UploadLimitExceededException("maxRequestSize", maxRequestSize);
+                }
+            } catch (NumberFormatException e) {
+                // 交给容器处理
+            }
+        }
+    }
+
+    public void checkPartCount(int count) {
+        if (maxParts >= 0 && count > maxParts) {
+            throw new UploadLimitExceededException("maxParts", maxParts);
+        }
+    }
+
+    /**
+     * 读取字段的内容，超过 maxFieldSize 的时候中断.
+     */
+    public String readField(InputStream in, String charset) throws IOException {
+        UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream(256);
+        IoUtils.copy(new LimitedInputStream(in, maxFieldSize, "maxFieldSize"), out);
+        return out.toString(charset);
+    }
+
+    /**
+     * 包装 request，读取的内容超过 maxRequestSize 的时候中断 (没有 Content-Length 的请求).
+     */
+    public HttpServletRequest wrap(HttpServletRequest request) {
+        request.setAttribute(KEY_IN_REQUEST, this);
+        if (maxRequestSize < 0) {
+            return request;
+        }
+        return new HttpServletRequestWrapper(request) {
+            private ServletInputStream stream;
+
+            @Override
+            public ServletInputStream getInputStream() throws IOException {
+                if (stream == null) {
+                    final InputStream in = new LimitedInputStream(super.getInputStream(), maxRequestSize, "maxRequestSize");
+                    stream = new ServletInputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            return in.read();
+                        }
+
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            return in.read(b, off, len);
+                        }
+                    };
+                }
+                return stream;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "maxRequestSize=" + maxRequestSize + ", maxFileSize=" + maxFileSize + ", maxParts=" + maxParts + ", maxFieldSize=" + maxFieldSize;
+    }
+
+    static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private final String limitName;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit, String limitName) {
+            super(in);
+            this.limit = limit;
+            this.limitName = limitName;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                check(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                check(n);
+            }
+            return n;
+        }
+
+        private void check(int n) {
+            count += n;
+            if (limit >= 0 && count > limit) {
+                throw new UploadLimitExceededException(limitName, limit);
+            }
+        }
+    }
+}
@@ -20,10 +20,16 @@
 package jetbrick.web.mvc.multipart;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.http.HttpServletRequest;
 import jetbrick.util.*;
 import jetbrick.web.mvc.WebConfig;
 
 public final class UploadUtils {
+    public static final String KEY_CONSUMERS_IN_REQUEST = "jetbrick.mvc.upload.consumers";
+    private static final String KEY_MEMORY_IN_REQUEST = "jetbrick.mvc.upload.memory";
 
     /**
      * 返回一个上传的临时文件名.
@@ -39,4 +45,63 @@ public final class UploadUtils {
         return new File(WebConfig.getUploaddir(), fileName);
     }
 
+    /**
+     * 创建用于保存上传文件的 FilePartOutputStream (FileUpload 实现中使用)，
+     * 使用当前请求的 UploadLimits 和 PartConsumer.
+     */
+    public static FilePartOutputStream newFilePartOutputStream(HttpServletRequest request, String fieldName, String originalFilename, String contentType) throws IOException {
+        FilePartOutputStream out = new FilePartOutputStream(originalFilename);
+        out.setMaxSize(UploadLimits.get(request).getMaxFileSize());
+        out.setMemoryBudget(getMemoryBudget(request));
+
+        List<PartConsumer> consumers = getPartConsumers(request);
+        if (consumers != null && consumers.size() > 0) {
+            boolean success = false;
+            try {
+                for (PartConsumer consumer : consumers) {
+                    PartConsumer.Stage stage = consumer.open(fieldName, originalFilename, contentType);
+                    if (stage != null) {
+                        out.addStage(stage);
+                    }
+                }
+                success = true;
+            } finally {
+                if (!success) {
+                    out.abort();
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 上传失败的时候调用 (FileUpload 实现中使用)，删除已经上传的文件，以及 PartConsumer 为这些文件创建的内容.
+     */
+    public static void discardFileParts(List<FilePart> fileParts) {
+        for (FilePart filePart : fileParts) {
+            filePart.abortCompletedStages();
+            filePart.delete();
+        }
+    }
+
+    // 当前请求剩余的可以保存在内存中的字节数 (web.upload.memory.size)，返回 null 表示不限制
+    private static AtomicLong getMemoryBudget(HttpServletRequest request) {
+        long memorySize = WebConfig.getUploadMemorySize();
+        if (memorySize < 0) {
+            return null;
+        }
+        AtomicLong budget = (AtomicLong) request.getAttribute(KEY_MEMORY_IN_REQUEST);
+        if (budget == null) {
+            budget = new AtomicLong(memorySize);
+            request.setAttribute(KEY_MEMORY_IN_REQUEST, budget);
+        }
+        return budget;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<PartConsumer> getPartConsumers(HttpServletRequest request) {
+        List<PartConsumer> consumers = (List<PartConsumer>) request.getAttribute(KEY_CONSUMERS_IN_REQUEST);
+        return (consumers != null) ? consumers : WebConfig.getPartConsumers();
+    }
+
 }
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import jetbrick.util.Validate;
+import jetbrick.web.mvc.ManagedWith;
+
+/**
+ * 为 Action 的返回结果增加 ETag/Last-Modified，支持 Conditional GET (304 Not Modified).
+ *
+ * <pre>
+ * return ConditionalResult.lastModified(result, article.getUpdatedTime());
+ * return ConditionalResult.etag(result, article.getVersion());
+ * return ConditionalResult.digest(result); // 缓存输出内容，根据 MD5 生成 ETag
+ * </pre>
+ */
+@ManagedWith(ConditionalResultHandler.class)
+public final class ConditionalResult {
+    private final Object result;
+    private final String etag;
+    private final long lastModified;
+    private final boolean digest;
+
+    public ConditionalResult(Object result, String etag, long lastModified, boolean digest) {
+        Validate.notNull(result);
+        this.result = result;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.digest = digest;
+    }
+
+    public static ConditionalResult lastModified(Object result, long lastModified) {
+        return new ConditionalResult(result, null, lastModified, false);
+    }
+
+    public static ConditionalResult etag(Object result, String etag) {
+        return new ConditionalResult(result, '"' + etag + '"', -1, false);
+    }
+
+    public static ConditionalResult weakETag(Object result, String etag) {
+        return new ConditionalResult(result, "W/\"" + etag + '"', -1, false);
+    }
+
+    public static ConditionalResult digest(Object result) {
+        return new ConditionalResult(result, null, -1, true);
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    // 完整的 entity-tag (包含引号)
+    public String getETag() {
+        return etag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    // 是否根据输出内容的 MD5 生成 ETag
+    public boolean isDigest() {
+        return digest;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jetbrick.web.mvc.*;
+
+/**
+ * 处理 ConditionalResult：检查 If-None-Match/If-Modified-Since，有效的话返回 304，否则交给实际的 ResultHandler.
+ */
+public final class ConditionalResultHandler implements ResultHandler<ConditionalResult> {
+
+    @Override
+    public void handle(RequestContext ctx, ConditionalResult result) throws Exception {
+        HttpServletRequest request = ctx.getRequest();
+        HttpServletResponse response = ctx.getResponse();
+
+        if (!result.isDigest()) {
+            if (ConditionalUtils.checkNotModified(request, response, result.getETag(), result.getLastModified())) {
+                return;
+            }
+            ctx.handleResultTo(result.getResult(), response);
+            return;
+        }
+
+        // 先缓存输出内容，然后计算 ETag
+        BufferedResponseWrapper buffer = new BufferedResponseWrapper(response);
+        ctx.handleResultTo(result.getResult(), buffer);
+        if (buffer.isCommittedByError()) {
+            return;
+        }
+
+        if (buffer.getStatus() == HttpServletResponse.SC_OK) {
+            String etag = ConditionalUtils.digestETag(buffer.toByteBuffer());
+            if (ConditionalUtils.checkNotModified(request, response, etag, result.getLastModified())) {
+                return;
+            }
+        }
+
+        ResponseUtils.setContentLength(response, buffer.size());
+        buffer.writeTo(response.getOutputStream());
+        response.getOutputStream().flush();
+    }
+}
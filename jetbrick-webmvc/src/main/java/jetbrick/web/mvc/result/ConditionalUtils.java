@@ -0,0 +1,147 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jetbrick.web.mvc.RequestContext;
+import jetbrick.web.mvc.action.ConditionalValidator;
+
+/**
+ * Conditional GET 支持 (ETag / Last-Modified / 304 Not Modified).
+ */
+public final class ConditionalUtils {
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    /**
+     * 输出 ETag/Last-Modified，并且检查 If-None-Match/If-Modified-Since.
+     *
+     * @param etag          完整的 entity-tag (包含引号，可以是 W/ 开头)，null 表示没有
+     * @param lastModified  最后修改时间，-1 表示未知
+     * @return 返回 true 表示已经设置了 304 Not Modified，不需要再输出内容
+     */
+    public static boolean checkNotModified(HttpServletRequest request, HttpServletResponse response, String etag, long lastModified) {
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
+        if (lastModified >= 0) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+
+        boolean notModified;
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // If-None-Match 优先于 If-Modified-Since
+            notModified = (etag != null) && isETagMatched(ifNoneMatch, etag, true);
+        } else if (lastModified >= 0) {
+            long since;
+            try {
+                since = request.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException e) {
+                since = -1;
+            }
+            notModified = (since >= 0) && (lastModified / 1000 <= since / 1000);
+        } else {
+            notModified = false;
+        }
+
+        if (notModified) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return notModified;
+    }
+
+    /**
+     * 在 Action 执行之前，使用 @Conditional 指定的 ConditionalValidator 进行检查.
+     */
+    public static boolean checkNotModified(RequestContext ctx, ConditionalValidator validator) {
+        HttpServletRequest request = ctx.getRequest();
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        return checkNotModified(request, ctx.getResponse(), validator.getETag(ctx), validator.getLastModified(ctx));
+    }
+
+    /**
+     * 检查 ETag 是否在 header 列表中.
+     *
+     * @param weak  true 表示弱比较 (If-None-Match)，false 表示强比较 (If-Range)
+     */
+    public static boolean isETagMatched(String header, String etag, boolean weak) {
+        header = header.trim();
+        if ("*".equals(header)) {
+            return true;
+        }
+        if (weak) {
+            etag = stripWeak(etag);
+        } else if (etag.startsWith("W/")) {
+            return false;
+        }
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (weak) {
+                tag = stripWeak(tag);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    // 根据文件的长度和修改时间生成 ETag
+    public static String fileETag(long length, long lastModified) {
+        return '"' + Long.toHexString(lastModified) + '-' + Long.toHexString(length) + '"';
+    }
+
+    // 根据输出内容的 MD5 生成 ETag
+    public static String digestETag(ByteBuffer data) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        md.update(data);
+        byte[] digest = md.digest();
+
+        char[] chars = new char[digest.length * 2 + 2];
+        chars[0] = '"';
+        for (int i = 0; i < digest.length; i++) {
+            chars[i * 2 + 1] = HEX_CHARS[(digest[i] >> 4) & 0x0f];
+            chars[i * 2 + 2] = HEX_CHARS[digest[i] & 0x0f];
+        }
+        chars[chars.length - 1] = '"';
+        return new String(chars);
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+/**
+ * 由其他线程在将来设置结果的 Action 返回值 (使用 Servlet 3 异步请求处理).
+ *
+ * <pre>
+ * &#64;Action
+ * public DeferredResult&lt;String&gt; poll() {
+ *     DeferredResult&lt;String&gt; result = new DeferredResult&lt;String&gt;(5000, "/timeout.jetx");
+ *     queue.add(result); // 在其他线程中调用 result.setResult(...)
+ *     return result;
+ * }
+ * </pre>
+ *
+ * <p>设置的结果将会继续交给对应的 ResultHandler 进行处理.</p>
+ */
+public class DeferredResult<T> {
+    private final long timeout;
+    private final boolean hasTimeoutResult;
+    private final T timeoutResult;
+
+    private Object result;
+    private Throwable error;
+    private boolean done;
+    private Callback callback;
+
+    /**
+     * 使用全局的超时时间 (web.async.timeout).
+     */
+    public DeferredResult() {
+        this(0, false, null);
+    }
+
+    /**
+     * @param timeout 超时时间 (ms)，小于等于 0 表示使用全局的超时时间
+     */
+    public DeferredResult(long timeout) {
+        this(timeout, false, null);
+    }
+
+    /**
+     * @param timeout 超时时间 (ms)，小于等于 0 表示使用全局的超时时间
+     * @param timeoutResult 超时后使用的结果
+     */
+    public DeferredResult(long timeout, T timeoutResult) {
+        this(timeout, true, timeoutResult);
+    }
+
+    private DeferredResult(long timeout, boolean hasTimeoutResult, T timeoutResult) {
+        this.timeout = timeout;
+        this.hasTimeoutResult = hasTimeoutResult;
+        this.timeoutResult = timeoutResult;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * 设置结果.
+     *
+     * @return 如果已经设置过结果或者已经超时，返回 false.
+     */
+    public boolean setResult(T result) {
+        return complete(result, null);
+    }
+
+    /**
+     * 设置异常，异常将会交给 ExceptionHandler 进行处理.
+     *
+     * @return 如果已经设置过结果或者已经超时，返回 false.
+     */
+    public boolean setErrorResult(Throwable error) {
+        return complete(null, error);
+    }
+
+    public synchronized boolean isSetOrExpired() {
+        return done;
+    }
+
+    /**
+     * 超时处理 (由框架调用).
+     *
+     * @return 如果已经设置过结果，返回 false.
+     */
+    public boolean expire() {
+        if (hasTimeoutResult) {
+            return complete(timeoutResult, null);
+        }
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            return true;
+        }
+    }
+
+    /**
+     * 注册结果回调 (由框架调用)，如果结果已经设置，立即回调.
+     */
+    public void setCallback(Callback callback) {
+        synchronized (this) {
+            this.callback = callback;
+            if (!done) {
+                return;
+            }
+        }
+        callback.onResult(result, error);
+    }
+
+    private boolean complete(Object result, Throwable error) {
+        Callback cb;
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.result = result;
+            this.error = error;
+            this.done = true;
+            cb = callback;
+        }
+        if (cb != null) {
+            cb.onResult(result, error);
+        }
+        return true;
+    }
+
+    /**
+     * 结果回调.
+     */
+    public static interface Callback {
+        public void onResult(Object result, Throwable error);
+    }
+}
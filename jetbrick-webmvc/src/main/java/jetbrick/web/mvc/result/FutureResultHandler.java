@@ -0,0 +1,39 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.util.concurrent.Future;
+import jetbrick.web.mvc.RequestContext;
+import jetbrick.web.mvc.WebConfig;
+
+/**
+ * 使用 Servlet 3 异步请求处理 Future.
+ *
+ * @see jetbrick.web.mvc.AsyncDispatcher
+ */
+public final class FutureResultHandler implements ResultHandler<Future<?>> {
+
+    @Override
+    public void handle(RequestContext ctx, Future<?> result) throws Exception {
+        if (result != null) {
+            WebConfig.getAsyncDispatcher().dispatch(ctx, result);
+        }
+    }
+}
@@ -22,8 +22,8 @@ package jetbrick.web.mvc.result;
 import java.io.PrintWriter;
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.bind.*;
+import jetbrick.web.mvc.JAXBContextCache;
 import jetbrick.web.mvc.RequestContext;
-import jetbrick.web.mvc.WebConfig;
 
 /**
  * 输出  JAXMElement response.
@@ -38,13 +38,13 @@ public final class JAXBElementResultHandler implements ResultHandler<JAXBElement
         response.setContentType("application/xml");
         PrintWriter out = response.getWriter();
 
-        JAXBContext jc = JAXBContext.newInstance(jaxbElement.getDeclaredType());
-        Marshaller marshaler = jc.createMarshaller();
-        marshaler.setProperty(Marshaller.JAXB_ENCODING, WebConfig.getHttpEncoding());
-        if (WebConfig.isDevelopment()) {
-            marshaler.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        Class<?> type = jaxbElement.getDeclaredType();
+        Marshaller marshaler = JAXBContextCache.borrowMarshaller(type);
+        try {
+            marshaler.marshal(jaxbElement, out);
+        } finally {
+            JAXBContextCache.release(type, marshaler);
         }
-        marshaler.marshal(jaxbElement, out);
 
         out.flush();
     }
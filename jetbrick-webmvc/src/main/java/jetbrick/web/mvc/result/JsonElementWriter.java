@@ -0,0 +1,37 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 将一个对象序列化成 JSON (用于 JsonStream 的流式输出).
+ *
+ * <p>由 jetbrick-webmvc-fastjson 或者 jetbrick-webmvc-gson 提供实现，使用 &#64;Managed 自动注册.</p>
+ */
+public interface JsonElementWriter {
+
+    /**
+     * 输出一个元素，不需要换行.
+     */
+    public void write(Writer out, Object element) throws IOException;
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import jetbrick.util.ClassLoaderUtils;
+
+/**
+ * 流式输出的 JSON 集合，元素逐个序列化之后输出，不需要在内存中构建完整的 List.
+ *
+ * <pre>
+ * &#64;Action
+ * public JsonStream export() {
+ *     return JsonStream.of(dao.iterateAll()).ndjson();
+ * }
+ * </pre>
+ *
+ * <p>数据源可以是 Iterator、Iterable 或者 java.util.stream.Stream，输出完毕之后会调用数据源的 close().
+ * Action 直接返回 Iterator 或者 Stream 的时候，等同于 JsonStream.of(...).</p>
+ *
+ * <p>没有指定格式的话，请求的 Accept 中包含 application/x-ndjson 时使用 NDJSON，否则输出 JSON 数组.</p>
+ */
+public final class JsonStream {
+    public static final int DEFAULT_FLUSH_SIZE = 1000;
+    private static final Class<?> BASE_STREAM_CLASS = ClassLoaderUtils.loadClass("java.util.stream.BaseStream");
+
+    public static enum Format {
+        ARRAY, NDJSON
+    }
+
+    private final Object source;
+    private Format format;
+    private int flushSize = DEFAULT_FLUSH_SIZE;
+
+    private JsonStream(Object source) {
+        this.source = source;
+    }
+
+    /**
+     * @param source Iterator、Iterable 或者 java.util.stream.BaseStream
+     */
+    public static JsonStream of(Object source) {
+        if (source instanceof JsonStream) {
+            return (JsonStream) source;
+        }
+        if (!(source instanceof Iterator || source instanceof Iterable || isBaseStream(source))) {
+            throw new IllegalArgumentException("Unsupported stream source: " + source.getClass().getName());
+        }
+        return new JsonStream(source);
+    }
+
+    // 每行一个 JSON (application/x-ndjson)
+    public JsonStream ndjson() {
+        this.format = Format.NDJSON;
+        return this;
+    }
+
+    // 输出一个 JSON 数组
+    public JsonStream array() {
+        this.format = Format.ARRAY;
+        return this;
+    }
+
+    /**
+     * 每输出 flushSize 个元素 flush 一次，客户端比较慢的时候，flush 会阻塞，从而暂停读取数据源.
+     */
+    public JsonStream flushSize(int flushSize) {
+        this.flushSize = Math.max(flushSize, 1);
+        return this;
+    }
+
+    // 返回 null 表示根据 Accept 决定
+    public Format getFormat() {
+        return format;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    public Iterator<?> iterator() {
+        if (source instanceof Iterator) {
+            return (Iterator<?>) source;
+        }
+        if (source instanceof Iterable) {
+            return ((Iterable<?>) source).iterator();
+        }
+        return (Iterator<?>) invoke("iterator");
+    }
+
+    // 关闭数据源 (如：Stream.close()、数据库游标等)
+    public void close() throws IOException {
+        if (source instanceof Closeable) {
+            ((Closeable) source).close();
+        } else if (isBaseStream(source)) {
+            invoke("close");
+        }
+    }
+
+    private Object invoke(String name) {
+        try {
+            Method method = BASE_STREAM_CLASS.getMethod(name);
+            return method.invoke(source);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isBaseStream(Object source) {
+        return BASE_STREAM_CLASS != null && BASE_STREAM_CLASS.isInstance(source);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jetbrick.web.mvc.RequestContext;
+import jetbrick.web.mvc.WebConfig;
+
+/**
+ * 流式输出 Iterator/Stream/JsonStream (chunked 编码)，元素使用 JsonElementWriter 逐个序列化.
+ *
+ * @see JsonStream
+ */
+public final class JsonStreamResultHandler implements ResultHandler<Object> {
+    public static final String NDJSON = "application/x-ndjson";
+
+    @Override
+    public void handle(RequestContext ctx, Object result) throws IOException {
+        if (result == null) {
+            return;
+        }
+
+        JsonElementWriter elementWriter = WebConfig.getJsonElementWriter();
+        if (elementWriter == null) {
+            throw new IllegalStateException("No JsonElementWriter found, jetbrick-webmvc-fastjson or jetbrick-webmvc-gson is required.");
+        }
+
+        HttpServletRequest request = ctx.getRequest();
+        HttpServletResponse response = ctx.getResponse();
+        JsonStream stream = JsonStream.of(result);
+
+        JsonStream.Format format = stream.getFormat();
+        if (format == null) {
+            String accept = request.getHeader("Accept");
+            format = (accept != null && accept.contains(NDJSON)) ? JsonStream.Format.NDJSON : JsonStream.Format.ARRAY;
+        }
+
+        String characterEncoding = request.getCharacterEncoding();
+        response.setCharacterEncoding(characterEncoding);
+        String mimetype = (format == JsonStream.Format.NDJSON) ? NDJSON : MimetypeUtils.getJSON(request);
+        response.setContentType(mimetype + "; charset=" + characterEncoding);
+
+        // 不设置 Content-Length，使用 chunked 编码
+        PrintWriter out = response.getWriter();
+        try {
+            Iterator<?> it = stream.iterator();
+            boolean array = (format == JsonStream.Format.ARRAY);
+            int flushSize = stream.getFlushSize();
+            int count = 0;
+
+            if (array) {
+                out.write('[');
+            }
+            while (it.hasNext()) {
+                Object element = it.next();
+                if (array && count > 0) {
+                    out.write(',');
+                }
+                elementWriter.write(out, element);
+                if (!array) {
+                    out.write('\n');
+                }
+                if (++count % flushSize == 0) {
+                    out.flush();
+                    if (out.checkError()) {
+                        return; // 客户端已经断开，不再读取数据源
+                    }
+                }
+            }
+            if (array) {
+                out.write(']');
+            }
+            out.flush();
+        } finally {
+            stream.close();
+        }
+    }
+}
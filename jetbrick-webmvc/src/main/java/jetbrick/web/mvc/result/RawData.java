@@ -31,41 +31,66 @@ import jetbrick.web.mvc.ManagedWith;
 @ManagedWith(RawDataResultHandler.class)
 public final class RawData {
     private final InputStream is;
+    private final File file;
+    private final byte[] data;
     private final String contentType;
-    private final int contentLength;
+    private final long contentLength;
 
     public RawData(InputStream is, String contentType) {
         this.is = is;
+        this.file = null;
+        this.data = null;
         this.contentType = contentType;
         this.contentLength = 0;
     }
 
     public RawData(File file, String contentType) {
-        try {
-            this.is = new FileInputStream(file);
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
+        if (!file.isFile()) {
+            throw new RuntimeException(new FileNotFoundException(file.getAbsolutePath()));
         }
 
+        // 文件不在这里打开，由 RawDataResultHandler 直接输出 (sendfile/transferTo)
+        this.is = null;
+        this.file = file;
+        this.data = null;
         this.contentType = contentType;
-        this.contentLength = (int) file.length();
+        this.contentLength = file.length();
     }
 
     public RawData(byte[] data, String contentType) {
         this.is = new UnsafeByteArrayInputStream(data);
+        this.file = null;
+        this.data = data;
         this.contentType = contentType;
         this.contentLength = data.length;
     }
 
     public InputStream getInputStream() {
+        if (file != null) {
+            try {
+                return new FileInputStream(file);
+            } catch (FileNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+        }
         return is;
     }
 
+    // 如果是基于文件的输出，返回对应的文件，否则返回 null
+    public File getFile() {
+        return file;
+    }
+
+    // 如果是基于 byte[] 的输出，返回对应的数据，否则返回 null
+    public byte[] getData() {
+        return data;
+    }
+
     public String getContentType() {
         return contentType;
     }
 
-    public int getContentLength() {
+    public long getContentLength() {
         return contentLength;
     }
 }
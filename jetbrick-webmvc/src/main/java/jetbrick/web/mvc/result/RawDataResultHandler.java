@@ -20,10 +20,7 @@
 package jetbrick.web.mvc.result;
 
 import java.io.IOException;
-import java.io.InputStream;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
-import jetbrick.io.IoUtils;
 import jetbrick.web.mvc.RequestContext;
 
 /**
@@ -37,18 +34,16 @@ public final class RawDataResultHandler implements ResultHandler<RawData> {
     public void handle(RequestContext ctx, RawData result) throws IOException {
         HttpServletResponse response = ctx.getResponse();
         response.setContentType(result.getContentType());
-        if (result.getContentLength() > 0) {
-            response.setContentLength(result.getContentLength());
+        // 基于文件或者 byte[] 的输出：长度已知，支持 Range 请求，文件可以使用 sendfile/transferTo
+        if (result.getFile() != null) {
+            ResponseUtils.sendContent(ctx.getRequest(), response, result.getFile(), result.getContentType());
+        } else if (result.getData() != null) {
+            ResponseUtils.sendContent(ctx.getRequest(), response, result.getData(), result.getContentType());
+        } else {
+            if (result.getContentLength() > 0) {
+                ResponseUtils.setContentLength(response, result.getContentLength());
+            }
+            ResponseUtils.copy(result.getInputStream(), response.getOutputStream());
         }
-
-        ServletOutputStream out = response.getOutputStream();
-        InputStream is = result.getInputStream();
-        try {
-            IoUtils.copy(is, out);
-        } finally {
-            IoUtils.closeQuietly(is);
-        }
-
-        out.flush();
     }
 }
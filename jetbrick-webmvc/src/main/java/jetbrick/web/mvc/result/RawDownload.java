@@ -33,9 +33,11 @@ public final class RawDownload {
     public static final String MIME_APPLICATION_X_DOWNLOAD = "application/x-download";
     public static final String MIME_APPLICATION_OCTET_STREAM = "application/octet-stream";
     private final InputStream is;
+    private final File file;
+    private final byte[] data;
     private final String fileName;
     private final String contentType;
-    private final int contentLength;
+    private final long contentLength;
 
     public RawDownload(InputStream is, String fileName) {
         this(is, fileName, MIME_APPLICATION_OCTET_STREAM);
@@ -43,6 +45,8 @@ public final class RawDownload {
 
     public RawDownload(InputStream is, String fileName, String contentType) {
         this.is = is;
+        this.file = null;
+        this.data = null;
         this.fileName = fileName;
         this.contentType = contentType;
         this.contentLength = 0;
@@ -53,37 +57,58 @@ public final class RawDownload {
     }
 
     public RawDownload(File file, String fileName, String contentType) {
-        try {
-            this.is = new FileInputStream(file);
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException(e);
+        if (!file.isFile()) {
+            throw new RuntimeException(new FileNotFoundException(file.getAbsolutePath()));
         }
 
+        // 文件不在这里打开，由 RawDownloadResultHandler 直接输出 (sendfile/transferTo)
+        this.is = null;
+        this.file = file;
+        this.data = null;
         this.fileName = fileName;
         this.contentType = contentType;
-        this.contentLength = (int) file.length();
+        this.contentLength = file.length();
     }
 
     public RawDownload(byte[] data, String fileName, String contentType) {
         this.is = new UnsafeByteArrayInputStream(data);
+        this.file = null;
+        this.data = data;
         this.fileName = fileName;
         this.contentType = contentType;
         this.contentLength = data.length;
     }
 
     public InputStream getInputStream() {
+        if (file != null) {
+            try {
+                return new FileInputStream(file);
+            } catch (FileNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+        }
         return is;
     }
 
+    // 如果是基于文件的下载，返回对应的文件，否则返回 null
+    public File getFile() {
+        return file;
+    }
+
     public String getFileName() {
         return fileName;
     }
 
+    // 如果是基于 byte[] 的下载，返回对应的数据，否则返回 null
+    public byte[] getData() {
+        return data;
+    }
+
     public String getContentType() {
         return contentType;
     }
 
-    public int getContentLength() {
+    public long getContentLength() {
         return contentLength;
     }
 }
@@ -0,0 +1,339 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.List;
+import java.util.UUID;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jetbrick.io.IoUtils;
+import jetbrick.web.mvc.ResponseCompression;
+import jetbrick.web.mvc.WebConfig;
+
+/**
+ * RawData/RawDownload 等二进制输出的公共方法.
+ */
+public final class ResponseUtils {
+    // Tomcat sendfile 支持 (NIO/APR connector)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CRLF = "\r\n";
+
+    // Servlet 3.0 中 setContentLength() 只支持 int，超过 2G 的文件需要直接设置 header
+    public static void setContentLength(HttpServletResponse response, long length) {
+        if (length <= Integer.MAX_VALUE) {
+            response.setContentLength((int) length);
+        } else {
+            response.setHeader("Content-Length", Long.toString(length));
+        }
+    }
+
+    /**
+     * 输出整个文件，支持 Range 请求 (206 Partial Content).
+     */
+    public static void sendContent(HttpServletRequest request, HttpServletResponse response, File file, String contentType) throws IOException {
+        // 存在预先压缩好的 .gz 文件，直接输出 (不支持 Range)
+        ResponseCompression compression = WebConfig.getResponseCompression();
+        if (compression != null && compression.isPrecompressed()) {
+            File gzfile = new File(file.getPath() + ".gz");
+            if (gzfile.isFile() && gzfile.lastModified() >= file.lastModified()) {
+                // 两种输出 (.gz 和原始文件) 都需要 Vary，否则共享缓存会返回错误的版本
+                ResponseCompression.addVary(response);
+                if (request.getHeader("Range") == null && compression.isPrecompressedAccepted(request)) {
+                    response.setHeader("Content-Encoding", "gzip");
+                    new FileContent(gzfile, false).send(request, response, contentType);
+                    return;
+                }
+            }
+        }
+        new FileContent(file, true).send(request, response, contentType);
+    }
+
+    /**
+     * 输出整个 byte[]，支持 Range 请求 (206 Partial Content).
+     */
+    public static void sendContent(HttpServletRequest request, HttpServletResponse response, byte[] data, String contentType) throws IOException {
+        new BytesContent(data).send(request, response, contentType);
+    }
+
+    /**
+     * 输出文件的指定区间 [start, start + length).
+     *
+     * <p>容器支持 sendfile 的话，交给容器处理；否则使用 FileChannel.transferTo() 直接写入 output stream.</p>
+     */
+    public static void sendFile(HttpServletRequest request, HttpServletResponse response, File file, long start, long length) throws IOException {
+        // 不需要压缩的内容 (如：图片，.gz 文件，206) 不经过 CompressionResponseWrapper，这样才可以使用 sendfile
+        response = ResponseCompression.bypass(response);
+
+        // response 被包装过的话 (如：BufferedResponseWrapper)，内容必须经过 wrapper 输出
+        if (!(response instanceof ServletResponseWrapper) && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START, Long.valueOf(start));
+            request.setAttribute(SENDFILE_END, Long.valueOf(start + length));
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        transferTo(file, start, length, out);
+        out.flush();
+    }
+
+    public static void transferTo(File file, long start, long length, OutputStream out) throws IOException {
+        FileInputStream is = new FileInputStream(file);
+        try {
+            transferTo(is.getChannel(), start, length, Channels.newChannel(out));
+        } finally {
+            IoUtils.closeQuietly(is);
+        }
+    }
+
+    // 使用 position 直接定位，不需要 skip
+    private static void transferTo(FileChannel channel, long start, long length, WritableByteChannel target) throws IOException {
+        long position = start;
+        long end = start + length;
+        while (position < end) {
+            long count = channel.transferTo(position, end - position, target);
+            if (count <= 0) {
+                break; // 文件被截断
+            }
+            position += count;
+        }
+    }
+
+    public static void copy(InputStream is, OutputStream out) throws IOException {
+        try {
+            IoUtils.copy(is, out);
+        } finally {
+            IoUtils.closeQuietly(is);
+        }
+        out.flush();
+    }
+
+    /**
+     * 长度已知，可以随机访问的输出内容.
+     */
+    private static abstract class RandomAccessContent {
+        private final boolean rangeable;
+
+        RandomAccessContent(boolean rangeable) {
+            this.rangeable = rangeable;
+        }
+
+        abstract long length();
+
+        // 返回 -1 表示未知
+        abstract long lastModified();
+
+        // 返回 null 表示没有
+        abstract String etag();
+
+        abstract void sendFull(HttpServletRequest request, HttpServletResponse response) throws IOException;
+
+        abstract void sendRange(HttpServletRequest request, HttpServletResponse response, ByteRange range) throws IOException;
+
+        // 输出 multipart/byteranges
+        abstract void writeRanges(OutputStream out, List<ByteRange> ranges, String[] headers, String trailer) throws IOException;
+
+        final void send(HttpServletRequest request, HttpServletResponse response, String contentType) throws IOException {
+            long length = length();
+            if (rangeable) {
+                response.setHeader("Accept-Ranges", "bytes");
+            }
+
+            String etag = etag();
+            long lastModified = lastModified();
+            if (ConditionalUtils.checkNotModified(request, response, etag, lastModified)) {
+                return;
+            }
+
+            List<ByteRange> ranges = null;
+            String header = request.getHeader("Range");
+            if (rangeable && header != null && "GET".equals(request.getMethod()) && isIfRangeMatched(request, etag, lastModified)) {
+                ranges = ByteRange.parse(header, length);
+            }
+
+            if (ranges == null) {
+                setContentLength(response, length);
+                sendFull(request, response);
+            } else if (ranges.isEmpty()) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            } else if (ranges.size() == 1) {
+                ByteRange range = ranges.get(0);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", range.toContentRange(length));
+                setContentLength(response, range.getLength());
+                sendRange(request, response, range);
+            } else {
+                String boundary = UUID.randomUUID().toString().replace("-", "");
+                String[] headers = new String[ranges.size()];
+                String trailer = CRLF + "--" + boundary + "--" + CRLF;
+
+                // 预先计算 Content-Length
+                long total = trailer.length();
+                for (int i = 0; i < headers.length; i++) {
+                    ByteRange range = ranges.get(i);
+                    StringBuilder sb = new StringBuilder(128);
+                    sb.append(CRLF).append("--").append(boundary).append(CRLF);
+                    if (contentType != null) {
+                        sb.append("Content-Type: ").append(contentType).append(CRLF);
+                    }
+                    sb.append("Content-Range: ").append(range.toContentRange(length)).append(CRLF);
+                    sb.append(CRLF);
+                    headers[i] = sb.toString();
+                    total += headers[i].length() + range.getLength();
+                }
+
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setContentType("multipart/byteranges; boundary=" + boundary);
+                setContentLength(response, total);
+
+                OutputStream out = response.getOutputStream();
+                writeRanges(out, ranges, headers, trailer);
+                out.flush();
+            }
+        }
+
+        // If-Range 可以是 ETag 或者 HTTP-date，不匹配的话返回整个内容
+        private boolean isIfRangeMatched(HttpServletRequest request, String etag, long lastModified) {
+            String ifRange = request.getHeader("If-Range");
+            if (ifRange == null) {
+                return true;
+            }
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                return (etag != null) && ConditionalUtils.isETagMatched(ifRange, etag, false);
+            }
+            if (lastModified < 0) {
+                return false;
+            }
+            try {
+                long date = request.getDateHeader("If-Range");
+                return (lastModified / 1000) == (date / 1000);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+    }
+
+    private static final class FileContent extends RandomAccessContent {
+        private final File file;
+
+        FileContent(File file, boolean rangeable) {
+            super(rangeable);
+            this.file = file;
+        }
+
+        @Override
+        long length() {
+            return file.length();
+        }
+
+        @Override
+        long lastModified() {
+            return file.lastModified();
+        }
+
+        @Override
+        String etag() {
+            return ConditionalUtils.fileETag(file.length(), file.lastModified());
+        }
+
+        @Override
+        void sendFull(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            sendFile(request, response, file, 0, length());
+        }
+
+        @Override
+        void sendRange(HttpServletRequest request, HttpServletResponse response, ByteRange range) throws IOException {
+            sendFile(request, response, file, range.getStart(), range.getLength());
+        }
+
+        @Override
+        void writeRanges(OutputStream out, List<ByteRange> ranges, String[] headers, String trailer) throws IOException {
+            FileInputStream is = new FileInputStream(file);
+            try {
+                FileChannel channel = is.getChannel();
+                WritableByteChannel target = Channels.newChannel(out);
+                for (int i = 0; i < headers.length; i++) {
+                    ByteRange range = ranges.get(i);
+                    out.write(headers[i].getBytes("ISO-8859-1"));
+                    transferTo(channel, range.getStart(), range.getLength(), target);
+                }
+                out.write(trailer.getBytes("ISO-8859-1"));
+            } finally {
+                IoUtils.closeQuietly(is);
+            }
+        }
+    }
+
+    private static final class BytesContent extends RandomAccessContent {
+        private final byte[] data;
+
+        BytesContent(byte[] data) {
+            super(true);
+            this.data = data;
+        }
+
+        @Override
+        long length() {
+            return data.length;
+        }
+
+        @Override
+        long lastModified() {
+            return -1;
+        }
+
+        @Override
+        String etag() {
+            return null;
+        }
+
+        @Override
+        void sendFull(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            OutputStream out = response.getOutputStream();
+            out.write(data);
+            out.flush();
+        }
+
+        @Override
+        void sendRange(HttpServletRequest request, HttpServletResponse response, ByteRange range) throws IOException {
+            OutputStream out = response.getOutputStream();
+            out.write(data, (int) range.getStart(), (int) range.getLength());
+            out.flush();
+        }
+
+        @Override
+        void writeRanges(OutputStream out, List<ByteRange> ranges, String[] headers, String trailer) throws IOException {
+            for (int i = 0; i < headers.length; i++) {
+                ByteRange range = ranges.get(i);
+                out.write(headers[i].getBytes("ISO-8859-1"));
+                out.write(data, (int) range.getStart(), (int) range.getLength());
+            }
+            out.write(trailer.getBytes("ISO-8859-1"));
+        }
+    }
+}
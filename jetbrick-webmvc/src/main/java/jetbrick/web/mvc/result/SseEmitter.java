@@ -0,0 +1,491 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.result;
+
+import java.io.IOException;
+import java.lang.reflect.*;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import javax.servlet.ServletOutputStream;
+
+/**
+ * Server-Sent Events (text/event-stream) 的 Action 返回值，在 complete() 之前一直保持连接 (使用 Servlet 3 异步请求处理).
+ *
+ * <pre>
+ * &#64;Action
+ * public SseEmitter subscribe() {
+ *     SseEmitter emitter = new SseEmitter();
+ *     subscribers.add(emitter); // 在其他线程中调用 emitter.send(...)，返回 false 表示连接已经断开
+ *     return emitter;
+ * }
+ * </pre>
+ *
+ * <p>每个连接待发送的数据不能超过 maxBufferSize，超过的话 (客户端太慢) 直接断开连接.
+ * 在 Servlet 3.1+ 的容器中使用 WriteListener 进行非阻塞输出，否则由调用 send() 的线程输出.
+ * 没有数据的时候，每隔 heartbeat 发送一个注释行，用于保持连接和检测断开的客户端.</p>
+ */
+public class SseEmitter {
+    public static final long DEFAULT_HEARTBEAT = 15000;
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("utf-8");
+    private static final byte[] HEARTBEAT_BYTES = ":\n\n".getBytes(UTF_8);
+
+    private final long timeout;
+    private long heartbeat = DEFAULT_HEARTBEAT;
+    private int maxBufferSize = DEFAULT_MAX_BUFFER_SIZE;
+    private Runnable completionCallback;
+
+    private final LinkedList<byte[]> queue = new LinkedList<byte[]>();
+    private int queuedBytes;
+    private boolean active; // 上次 heartbeat 之后是否有数据
+    private boolean completed; // 已经调用 complete()，等待数据输出完毕
+    private boolean closed;
+    private Throwable error;
+    private DeferredResult.Callback callback;
+
+    private ServletOutputStream out;
+    private Executor executor;
+    private volatile boolean nonBlocking; // 只在 attach() 的锁中修改
+    private boolean writing; // 阻塞模式下，是否有线程正在输出
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * 不会超时，直到调用 complete() 或者客户端断开.
+     */
+    public SseEmitter() {
+        this(0);
+    }
+
+    /**
+     * @param timeout 超时时间 (ms)，小于等于 0 表示不会超时
+     */
+    public SseEmitter(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public long getHeartbeat() {
+        return heartbeat;
+    }
+
+    /**
+     * @param heartbeat 心跳间隔 (ms)，小于等于 0 表示不发送心跳
+     */
+    public void setHeartbeat(long heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
+    public int getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    public void setMaxBufferSize(int maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * 连接结束的时候回调 (complete()、超时、客户端断开等).
+     */
+    public void onCompletion(Runnable completionCallback) {
+        this.completionCallback = completionCallback;
+    }
+
+    public static Event event() {
+        return new Event();
+    }
+
+    /**
+     * 发送一个只有 data 的 event.
+     *
+     * @return 连接已经关闭的话，返回 false.
+     */
+    public boolean send(Object data) {
+        return send(new Event().data(data));
+    }
+
+    /**
+     * @return 连接已经关闭的话，返回 false.
+     */
+    public boolean send(String name, Object data) {
+        return send(new Event().name(name).data(data));
+    }
+
+    /**
+     * @return 连接已经关闭 (或者客户端太慢，待发送的数据超过 maxBufferSize) 的话，返回 false.
+     */
+    public boolean send(Event event) {
+        return enqueue(event.toBytes(), true);
+    }
+
+    /**
+     * 所有的数据发送完毕之后，结束请求.
+     */
+    public void complete() {
+        synchronized (this) {
+            if (completed || closed) {
+                return;
+            }
+            completed = true;
+            if (out == null) {
+                return; // attach() 之后再结束
+            }
+        }
+        drain();
+    }
+
+    /**
+     * 结束请求，异常将会交给 ExceptionHandler 进行处理 (没有发送的数据将被丢弃).
+     */
+    public void completeWithError(Throwable error) {
+        close(error);
+    }
+
+    public synchronized boolean isCompleted() {
+        return completed || closed;
+    }
+
+    /**
+     * 超时或者请求已经结束 (由框架调用).
+     */
+    public void expire() {
+        close(null);
+    }
+
+    /**
+     * 没有数据的时候发送心跳 (由框架调用).
+     */
+    public void heartbeat() {
+        synchronized (this) {
+            if (active || !queue.isEmpty()) {
+                active = false;
+                return;
+            }
+        }
+        enqueue(HEARTBEAT_BYTES, false);
+    }
+
+    /**
+     * 开始输出 (由框架调用)，在此之前 send() 的数据会先缓存起来.
+     *
+     * @param executor 阻塞模式下，用于输出心跳
+     * @param callback 请求结束的时候回调
+     */
+    public void attach(ServletOutputStream out, Executor executor, DeferredResult.Callback callback) {
+        boolean closed;
+        synchronized (this) {
+            this.out = out;
+            this.executor = executor;
+            this.callback = callback;
+            // 在锁中注册，onWritePossible() 会等待注册完成
+            this.nonBlocking = (executor != null) && WriteListenerSupport.setWriteListener(out, this);
+            closed = this.closed;
+        }
+        if (closed) {
+            callback.onResult(null, error);
+        } else if (!nonBlocking) {
+            drain(); // 非阻塞模式下，容器会调用 onWritePossible()
+        }
+    }
+
+    private boolean enqueue(byte[] data, boolean event) {
+        boolean overflow;
+        boolean inExecutor = false;
+        synchronized (this) {
+            if (completed || closed) {
+                return false;
+            }
+            overflow = queuedBytes + data.length > maxBufferSize;
+            if (!overflow) {
+                queue.add(data);
+                queuedBytes += data.length;
+                if (event) {
+                    active = true;
+                }
+                if (out == null) {
+                    return true; // 还没有开始输出
+                }
+                // 心跳由定时器线程发送，阻塞模式下交给 executor 输出
+                inExecutor = !event && !nonBlocking && executor != null;
+            }
+        }
+        if (overflow) {
+            close(null); // 客户端太慢，断开连接
+            return false;
+        }
+        if (inExecutor) {
+            executor.execute(drainTask);
+        } else {
+            drain();
+        }
+        return true;
+    }
+
+    // 输出队列中的数据
+    void drain() {
+        boolean nonBlocking;
+        synchronized (this) {
+            // 和 attach() 使用同一个锁，不会在注册 WriteListener 的过程中读到旧的值
+            nonBlocking = this.nonBlocking;
+        }
+        if (nonBlocking) {
+            drainNonBlocking();
+        } else {
+            drainBlocking();
+        }
+    }
+
+    // 非阻塞的 write 不会阻塞，可以在锁中执行 (WriteListener.onWritePossible() 直接调用)
+    void drainNonBlocking() {
+        boolean done;
+        try {
+            synchronized (this) {
+                if (closed || out == null || !nonBlocking) {
+                    return;
+                }
+                while (!queue.isEmpty()) {
+                    if (!WriteListenerSupport.isReady(out)) {
+                        return; // 等待 onWritePossible()
+                    }
+                    byte[] data = queue.removeFirst();
+                    queuedBytes -= data.length;
+                    out.write(data);
+                }
+                if (!WriteListenerSupport.isReady(out)) {
+                    return;
+                }
+                out.flush();
+                done = completed;
+            }
+        } catch (IOException e) {
+            done = true; // 客户端已经断开
+        }
+        if (done) {
+            close(null);
+        }
+    }
+
+    // 同一时间只有一个线程在输出，其他线程只需要放到队列中
+    private void drainBlocking() {
+        synchronized (this) {
+            if (writing || closed || out == null || nonBlocking) {
+                return;
+            }
+            writing = true;
+        }
+        boolean done;
+        try {
+            while (true) {
+                byte[] data;
+                synchronized (this) {
+                    data = queue.poll();
+                    if (data != null) {
+                        queuedBytes -= data.length;
+                    }
+                }
+                if (data != null) {
+                    out.write(data);
+                    continue;
+                }
+                out.flush();
+                synchronized (this) {
+                    if (queue.isEmpty()) {
+                        writing = false;
+                        done = completed;
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                writing = false;
+            }
+            done = true; // 客户端已经断开
+        }
+        if (done) {
+            close(null);
+        }
+    }
+
+    private void close(Throwable error) {
+        DeferredResult.Callback cb;
+        Runnable completion;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            this.error = error;
+            queue.clear();
+            queuedBytes = 0;
+            cb = callback;
+            completion = completionCallback;
+        }
+        if (completion != null) {
+            completion.run();
+        }
+        if (cb != null) {
+            cb.onResult(null, error);
+        }
+    }
+
+    /**
+     * 一个 SSE event.
+     */
+    public static final class Event {
+        private final StringBuilder sb = new StringBuilder(64);
+
+        public Event id(String id) {
+            return field("id", id);
+        }
+
+        public Event name(String name) {
+            return field("event", name);
+        }
+
+        public Event retry(long retry) {
+            return field("retry", String.valueOf(retry));
+        }
+
+        public Event comment(String comment) {
+            return field("", comment);
+        }
+
+        /**
+         * 多行的 data 会被拆分成多个 data 行.
+         */
+        public Event data(Object data) {
+            return field("data", String.valueOf(data));
+        }
+
+        private Event field(String name, String value) {
+            int start = 0;
+            int length = value.length();
+            for (int i = 0; i <= length; i++) {
+                char c = (i < length) ? value.charAt(i) : '\n';
+                if (c == '\n' || c == '\r') {
+                    sb.append(name).append(':');
+                    if (i > start) {
+                        sb.append(' ').append(value, start, i);
+                    }
+                    sb.append('\n');
+                    if (c == '\r' && i + 1 < length && value.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    start = i + 1;
+                }
+            }
+            return this;
+        }
+
+        byte[] toBytes() {
+            return sb.toString().concat("\n").getBytes(UTF_8);
+        }
+    }
+
+    /**
+     * 使用反射注册 Servlet 3.1 的 WriteListener (项目需要兼容 Servlet 3.0).
+     */
+    static final class WriteListenerSupport {
+        private static final Class<?> WRITE_LISTENER_CLASS = loadClass("javax.servlet.WriteListener");
+        private static final Method SET_WRITE_LISTENER = getMethod("setWriteListener", WRITE_LISTENER_CLASS);
+        private static final Method IS_READY = getMethod("isReady", null);
+
+        public static boolean setWriteListener(ServletOutputStream out, final SseEmitter emitter) {
+            if (SET_WRITE_LISTENER == null || IS_READY == null) {
+                return false;
+            }
+
+            Object listener = Proxy.newProxyInstance(WRITE_LISTENER_CLASS.getClassLoader(), new Class<?>[] { WRITE_LISTENER_CLASS }, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+                    String name = m.getName();
+                    if (m.getDeclaringClass() == Object.class) {
+                        // 容器可能把 listener 放到集合中，或者输出到日志
+                        if ("equals".equals(name)) {
+                            return proxy == args[0];
+                        }
+                        if ("hashCode".equals(name)) {
+                            return System.identityHashCode(proxy);
+                        }
+                        return "SseEmitter$WriteListener@" + Integer.toHexString(System.identityHashCode(proxy));
+                    }
+                    if ("onWritePossible".equals(name)) {
+                        emitter.drainNonBlocking();
+                    } else if ("onError".equals(name)) {
+                        emitter.expire(); // 客户端已经断开
+                    }
+                    return null; // 忽略新版本 WriteListener 中增加的方法
+                }
+            });
+
+            try {
+                SET_WRITE_LISTENER.invoke(out, listener);
+                return true;
+            } catch (Exception e) {
+                return false; // 不支持非阻塞输出 (如：被包装过的 OutputStream)
+            }
+        }
+
+        public static boolean isReady(ServletOutputStream out) throws IOException {
+            try {
+                return (Boolean) IS_READY.invoke(out);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException(cause);
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
+
+        private static Method getMethod(String name, Class<?> parameterType) {
+            if (WRITE_LISTENER_CLASS == null) {
+                return null;
+            }
+            try {
+                if (parameterType == null) {
+                    return ServletOutputStream.class.getMethod(name);
+                }
+                return ServletOutputStream.class.getMethod(name, parameterType);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        private static Class<?> loadClass(String className) {
+            try {
+                return Class.forName(className);
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+    }
+}
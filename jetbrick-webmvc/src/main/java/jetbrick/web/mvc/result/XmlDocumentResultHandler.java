@@ -21,11 +21,11 @@ package jetbrick.web.mvc.result;
 
 import java.io.PrintWriter;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.transform.*;
+import javax.xml.transform.Transformer;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import jetbrick.web.mvc.RequestContext;
-import jetbrick.web.mvc.WebConfig;
+import jetbrick.web.mvc.XmlDocumentPool;
 import org.w3c.dom.Document;
 
 /**
@@ -34,29 +34,21 @@ import org.w3c.dom.Document;
  * @author Guoqiang Chen
  */
 public final class XmlDocumentResultHandler implements ResultHandler<Document> {
-    private Transformer outputTransformer;
 
     @Override
     public void handle(RequestContext ctx, Document document) throws Exception {
         HttpServletResponse response = ctx.getResponse();
         response.setContentType("application/xml");
 
-        Transformer transformer = outputTransformer;
-        if (transformer == null) {
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            transformer = transformerFactory.newTransformer();
-            transformer.setOutputProperty(OutputKeys.ENCODING, WebConfig.getHttpEncoding());
-            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-            if (WebConfig.isDevelopment()) {
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            }
-            outputTransformer = transformer;
-        }
-
         PrintWriter out = response.getWriter();
-        DOMSource xmlSource = new DOMSource(document);
-        StreamResult outputTarget = new StreamResult(out);
-        transformer.transform(xmlSource, outputTarget);
+        Transformer transformer = XmlDocumentPool.borrowTransformer();
+        try {
+            DOMSource xmlSource = new DOMSource(document);
+            StreamResult outputTarget = new StreamResult(out);
+            transformer.transform(xmlSource, outputTarget);
+        } finally {
+            XmlDocumentPool.release(transformer);
+        }
 
         out.flush();
     }
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.router;
+
+import java.util.List;
+import jetbrick.bean.KlassInfo;
+import jetbrick.bean.MethodInfo;
+import jetbrick.util.*;
+import jetbrick.util.annotation.ValueConstants;
+import jetbrick.web.mvc.*;
+import jetbrick.web.mvc.ComponentIndex.IndexedAction;
+import jetbrick.web.mvc.action.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 负责扫描 Controller 中的 Action，具体的路由匹配算法由子类实现.
+ *
+ * <h2>URL 映射规则：</h2>
+ * <ul>
+ *   <li>/users + (null)  == /users/(method)</li>
+ *   <li>/users + (empty) == /users/(method)</li>
+ *   <li>/users + /       == /users/</li>
+ *   <li>/users + /add    == /users/add</li>
+ * </ul>
+ */
+public abstract class AbstractRouter implements Router {
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * 根据 annotation，获取所有的 Action
+     */
+    @Override
+    public void registerController(Class<?> clazz) {
+        Controller controller = clazz.getAnnotation(Controller.class);
+        Validate.notNull(controller);
+
+        String ctrlPath = ValueConstants.trimToEmpty(controller.value());
+        ControllerInfo ctrlInfo = new ControllerInfo(clazz, controller);
+
+        KlassInfo klass = KlassInfo.create(clazz);
+
+        for (MethodInfo actionMethod : klass.getMethods()) {
+            if (!klass.isPublic() || actionMethod.isStatic()) {
+                continue;
+            }
+
+            Action action = actionMethod.getAnnotation(Action.class);
+            if (action == null) {
+                continue;
+            }
+
+            String actionPath = ValueConstants.defaultValue(action.value(), actionMethod.getName());
+            String url = StringUtils.removeEnd(ctrlPath, "/") + StringUtils.prefix(actionPath, "/");
+
+            registerAction(ctrlInfo, actionMethod, action.method(), url);
+        }
+    }
+
+    /**
+     * 根据编译期生成的索引注册 Controller，不需要再通过反射查找所有的 Action.
+     */
+    public void registerController(Class<?> clazz, List<IndexedAction> actions) {
+        Controller controller = clazz.getAnnotation(Controller.class);
+        Validate.notNull(controller);
+
+        ControllerInfo ctrlInfo = new ControllerInfo(clazz, controller);
+        KlassInfo klass = KlassInfo.create(clazz);
+
+        for (IndexedAction action : actions) {
+            MethodInfo actionMethod = klass.getMethod(action.getMethodName(), action.getParameterTypes());
+            if (actionMethod == null) {
+                throw new IllegalStateException("Action method not found in " + ComponentIndex.INDEX_FILE + ", please rebuild the project: " + clazz.getName() + "." + action.getMethodName());
+            }
+            registerAction(ctrlInfo, actionMethod, action.getHttpMethods(), action.getUrl());
+        }
+    }
+
+    private void registerAction(ControllerInfo ctrlInfo, MethodInfo actionMethod, HttpMethod[] httpMethods, String url) {
+        // validate the action result type
+        Class<?> returnClass = actionMethod.getRawReturnType(ctrlInfo.getType());
+        if (!WebConfig.getResultHandlerResolver().validate(returnClass)) {
+            throw new IllegalStateException("Unsupported result class: " + returnClass.getName() + " of " + actionMethod);
+        }
+
+        Validate.isTrue(httpMethods.length > 0);
+
+        if (log.isDebugEnabled()) {
+            log.debug("found action: {} {}", ArrayUtils.toString(httpMethods), url);
+        }
+
+        ActionInfo actionInfo = new ActionInfo(ctrlInfo, actionMethod, url);
+        for (HttpMethod method : httpMethods) {
+            register(method, actionInfo, url);
+        }
+    }
+
+    /**
+     * 将一个 Action 注册到指定 HttpMethod 的路由表中.
+     */
+    protected abstract void register(HttpMethod method, ActionInfo action, String url);
+}
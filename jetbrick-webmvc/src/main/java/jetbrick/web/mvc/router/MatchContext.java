@@ -0,0 +1,187 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.router;
+
+import java.util.Arrays;
+import jetbrick.web.mvc.action.PathVariables;
+
+/**
+ * 路由匹配过程中使用的临时数据 (每个线程一个实例，可以重复使用).
+ *
+ * <p>为了避免在匹配过程中产生垃圾对象，URL 不会被 split 成 String[]，而是记录每个 segment 的起止位置；
+ * 匹配到的 PathVariable 也只记录起止位置，只有在整个 URL 匹配成功后，才会生成 PathVariables 对象.</p>
+ */
+final class MatchContext {
+    private static final ThreadLocal<MatchContext> threadContext = new ThreadLocal<MatchContext>() {
+        @Override
+        protected MatchContext initialValue() {
+            return new MatchContext();
+        }
+    };
+
+    private String path;
+    private int[] segments = new int[32]; // segment i 的位置为 [segments[2i], segments[2i+1])
+    private int segmentCount;
+
+    private String[] names = new String[8];
+    private String[] values = new String[8]; // 正则表达式匹配的结果，其余的为 null
+    private int[] offsets = new int[16]; // 变量 i 的位置为 [offsets[2i], offsets[2i+1])
+    private int variableCount;
+
+    /**
+     * 获取当前线程的 MatchContext，并使用 path 进行初始化.
+     */
+    public static MatchContext get(String path) {
+        MatchContext ctx = threadContext.get();
+        ctx.reset(path);
+        return ctx;
+    }
+
+    // 和 StringUtils.split(path.substring(1), '/') 的结果保持一致 (保留空的 segment)
+    private void reset(String path) {
+        this.path = path;
+        this.segmentCount = 0;
+        this.variableCount = 0;
+
+        int length = path.length();
+        int start = 1;
+        for (int i = 1; i < length; i++) {
+            if (path.charAt(i) == '/') {
+                addSegment(start, i);
+                start = i + 1;
+            }
+        }
+        addSegment(Math.min(start, length), length);
+    }
+
+    private void addSegment(int start, int end) {
+        int pos = segmentCount << 1;
+        if (pos + 2 > segments.length) {
+            segments = Arrays.copyOf(segments, segments.length << 1);
+        }
+        segments[pos] = start;
+        segments[pos + 1] = end;
+        segmentCount++;
+    }
+
+    /**
+     * 匹配结束后调用，释放对 path 和变量值的引用.
+     */
+    public void release() {
+        path = null;
+        Arrays.fill(values, 0, variableCount, null);
+        variableCount = 0;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public int getSegmentStart(int index) {
+        return segments[index << 1];
+    }
+
+    public int getSegmentEnd(int index) {
+        return segments[(index << 1) + 1];
+    }
+
+    public int getSegmentLength(int index) {
+        return segments[(index << 1) + 1] - segments[index << 1];
+    }
+
+    // 注意：会产生一个新的 String 对象
+    public String getSegment(int index) {
+        return path.substring(segments[index << 1], segments[(index << 1) + 1]);
+    }
+
+    public boolean segmentEquals(int index, String value) {
+        int start = segments[index << 1];
+        int length = segments[(index << 1) + 1] - start;
+        return value.length() == length && path.regionMatches(start, value, 0, length);
+    }
+
+    // 和 String.hashCode() 的算法保持一致
+    public int segmentHashCode(int index) {
+        int h = 0;
+        int end = segments[(index << 1) + 1];
+        for (int i = segments[index << 1]; i < end; i++) {
+            h = 31 * h + path.charAt(i);
+        }
+        return h;
+    }
+
+    //---- path variables -------------------------------------------
+    public void addVariable(String name, int start, int end) {
+        ensureVariableCapacity();
+        names[variableCount] = name;
+        values[variableCount] = null;
+        offsets[variableCount << 1] = start;
+        offsets[(variableCount << 1) + 1] = end;
+        variableCount++;
+    }
+
+    public void addVariable(String name, String value) {
+        ensureVariableCapacity();
+        names[variableCount] = name;
+        values[variableCount] = value;
+        variableCount++;
+    }
+
+    private void ensureVariableCapacity() {
+        if (variableCount == names.length) {
+            names = Arrays.copyOf(names, names.length << 1);
+            values = Arrays.copyOf(values, values.length << 1);
+            offsets = Arrays.copyOf(offsets, offsets.length << 1);
+        }
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    // 回退到指定的变量个数 (用于匹配失败时的回溯)
+    public void truncate(int count) {
+        variableCount = count;
+    }
+
+    /**
+     * 匹配成功后，生成最终的 PathVariables.
+     *
+     * @return 如果没有任何变量，返回 null.
+     */
+    public PathVariables toPathVariables() {
+        if (variableCount == 0) {
+            return null;
+        }
+        PathVariables pathVariables = new PathVariables(variableCount);
+        for (int i = 0; i < variableCount; i++) {
+            String value = values[i];
+            if (value == null) {
+                value = path.substring(offsets[i << 1], offsets[(i << 1) + 1]);
+            }
+            pathVariables.add(names[i], value);
+        }
+        return pathVariables;
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.router;
+
+import java.util.*;
+import jetbrick.util.StringUtils;
+import jetbrick.web.mvc.RouteInfo;
+import jetbrick.web.mvc.action.ActionInfo;
+
+/*
+ * <h2>树形匹配算法</h2>
+ * <ol>
+ *   <li>按照 HttpMethod 分组</li>
+ *   <li>静态 URL 直接使用 Map 查找</li>
+ *   <li>动态 URL 按照 path segment 编译成一棵树，查找的代价只和 path 的深度以及匹配的分支数量有关</li>
+ * </ol>
+ *
+ * <h2>匹配优先级 (和 RestfulMatcher 完全一致)</h2>
+ * <ol>
+ *   <li>静态 URL 优先于动态 URL</li>
+ *   <li>第一个 segment 是静态 segment 的 URL 优先 (对应 RestfulMatcher 的分组)</li>
+ *   <li>其他情况下，所有能够匹配的 URL 中，先注册的优先 (不区分静态/动态 segment)</li>
+ * </ol>
+ *
+ * <p>每个节点记录子树中最先注册的顺序 (minOrder)，子节点按照 minOrder 排列，
+ * 已经找到的结果比子树中所有的 URL 都先注册的话，不需要继续查找此子树.</p>
+ */
+final class RadixTreeMatcher {
+    private final Map<String, RouteInfo> staticUrls = new HashMap<String, RouteInfo>(128);
+    private final Node root = new Node(null, 0);
+    private int registeredCount; // 动态 URL 的注册顺序
+
+    public void register(ActionInfo action, String url) {
+        if (url.indexOf('{') == -1) {
+            staticUrls.put(url, new RouteInfo(action));
+        } else {
+            int order = registeredCount++;
+            String[] urlSegments = StringUtils.split(url.substring(1), '/');
+            UrlSegmentMatcher[] path = new UrlSegmentMatcher[urlSegments.length];
+            Node node = root;
+            for (int i = 0; i < urlSegments.length; i++) {
+                node = node.addChild(urlSegments[i], order);
+                path[i] = node.matcher;
+            }
+            if (node.action == null) {
+                // 和 RestfulMatcher 一样，先注册的优先
+                node.action = action;
+                node.order = order;
+                node.path = path;
+            }
+        }
+    }
+
+    public RouteInfo lookup(String url) {
+        // 1. 查询静态路由
+        RouteInfo info = staticUrls.get(url);
+        if (info != null) {
+            return info;
+        }
+
+        // 2. 在树中查找动态路由
+        MatchContext ctx = MatchContext.get(url);
+        try {
+            Node found = root.lookup(ctx, 0, Integer.MAX_VALUE);
+            if (found == null) {
+                return RouteInfo.NOT_FOUND;
+            }
+            // 查找的过程中已经清除了 PathVariables，只需要重新匹配找到的这一条路径
+            for (int i = 0; i < found.path.length; i++) {
+                if (found.path[i] != null) {
+                    found.path[i].match(ctx, i);
+                }
+            }
+            return new RouteInfo(found.action, ctx.toPathVariables());
+        } finally {
+            ctx.release();
+        }
+    }
+
+    // 树中的一个节点，代表一个 URL segment
+    static final class Node {
+        private static final Node[] EMPTY_NODES = new Node[0];
+
+        private final UrlSegmentMatcher matcher; // 动态节点的匹配器，静态节点为 null
+        private final int minOrder; // 子树中最先注册的 URL 的顺序 (也就是节点的创建顺序)
+        private SegmentTable<Node> staticChildren; // 静态子节点
+        private Node[] dynamicChildren = EMPTY_NODES; // 动态子节点 (按 minOrder 排列)
+        private ActionInfo action; // 在此节点结束的 Action
+        private int order; // action 的注册顺序
+        private UrlSegmentMatcher[] path; // 从 root 到此节点的匹配器 (静态 segment 为 null)
+
+        public Node(UrlSegmentMatcher matcher, int minOrder) {
+            this.matcher = matcher;
+            this.minOrder = minOrder;
+        }
+
+        public Node addChild(String urlSegment, int order) {
+            if (isStaticSegment(urlSegment)) {
+                if (staticChildren == null) {
+                    staticChildren = new SegmentTable<Node>();
+                }
+                Node child = staticChildren.get(urlSegment);
+                if (child == null) {
+                    child = new Node(null, order);
+                    staticChildren.put(urlSegment, child);
+                }
+                return child;
+            }
+
+            // UrlSegmentMatcher.create() 对相同的 segment 返回相同的对象
+            UrlSegmentMatcher segmentMatcher = UrlSegmentMatcher.create(urlSegment);
+            for (Node child : dynamicChildren) {
+                if (child.matcher == segmentMatcher) {
+                    return child;
+                }
+            }
+            Node child = new Node(segmentMatcher, order);
+            dynamicChildren = Arrays.copyOf(dynamicChildren, dynamicChildren.length + 1);
+            dynamicChildren[dynamicChildren.length - 1] = child;
+            return child;
+        }
+
+        // 查找能够匹配，并且注册顺序小于 limit 的节点中最先注册的那一个. 返回之前会清除匹配过程中产生的 PathVariables
+        public Node lookup(MatchContext ctx, int index, int limit) {
+            if (minOrder >= limit) {
+                return null;
+            }
+            if (index == ctx.getSegmentCount()) {
+                return (action != null && order < limit) ? this : null;
+            }
+
+            Node staticChild = (staticChildren == null) ? null : staticChildren.get(ctx, index);
+            if (index == 0 && staticChild != null) {
+                // 第一个 segment 是静态 segment 的 URL 优先 (和 RestfulMatcher 的分组一致)
+                Node found = staticChild.lookup(ctx, 1, limit);
+                if (found != null) {
+                    return found;
+                }
+                staticChild = null;
+            }
+
+            // 静态子节点和动态子节点按照 minOrder 的顺序查找
+            Node best = null;
+            Node[] children = dynamicChildren;
+            for (int i = 0; i < children.length; i++) {
+                Node child = children[i];
+                if (staticChild != null && staticChild.minOrder < child.minOrder) {
+                    Node found = staticChild.lookup(ctx, index + 1, limit);
+                    if (found != null) {
+                        best = found;
+                        limit = found.order;
+                    }
+                    staticChild = null;
+                }
+                if (child.minOrder >= limit) {
+                    break; // 后面的子节点都是后注册的
+                }
+                int mark = ctx.getVariableCount();
+                if (child.matcher.match(ctx, index)) {
+                    Node found = child.lookup(ctx, index + 1, limit);
+                    if (found != null) {
+                        best = found;
+                        limit = found.order;
+                    }
+                }
+                ctx.truncate(mark); // 回溯：清除此分支匹配的内容
+            }
+            if (staticChild != null) {
+                Node found = staticChild.lookup(ctx, index + 1, limit);
+                if (found != null) {
+                    best = found;
+                }
+            }
+            return best;
+        }
+
+        private static boolean isStaticSegment(String urlSegment) {
+            return urlSegment.indexOf('{') == -1 && urlSegment.indexOf('*') == -1 && urlSegment.indexOf('?') == -1;
+        }
+    }
+}
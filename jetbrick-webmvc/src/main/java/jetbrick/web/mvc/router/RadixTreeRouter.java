@@ -0,0 +1,57 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.router;
+
+import javax.servlet.http.HttpServletRequest;
+import jetbrick.web.mvc.RouteInfo;
+import jetbrick.web.mvc.action.ActionInfo;
+import jetbrick.web.mvc.action.HttpMethod;
+
+/**
+ * 将所有动态 URL 编译成 segment 树的路由实现，查找代价和注册的路由数量无关.
+ *
+ * <pre>
+ * web.urls.router = jetbrick.web.mvc.router.RadixTreeRouter
+ * </pre>
+ *
+ * @see AbstractRouter
+ */
+public final class RadixTreeRouter extends AbstractRouter {
+    private final RadixTreeMatcher[] matchers = new RadixTreeMatcher[HttpMethod.METHOD_LENGTH];
+
+    @Override
+    protected void register(HttpMethod method, ActionInfo action, String url) {
+        RadixTreeMatcher matcher = matchers[method.getIndex()];
+        if (matcher == null) {
+            matcher = new RadixTreeMatcher();
+            matchers[method.getIndex()] = matcher;
+        }
+        matcher.register(action, url);
+    }
+
+    @Override
+    public RouteInfo lookup(HttpServletRequest request, String path, HttpMethod method) {
+        RadixTreeMatcher matcher = matchers[method.getIndex()];
+        if (matcher != null) {
+            return matcher.lookup(path);
+        }
+        return RouteInfo.NOT_FOUND;
+    }
+}
@@ -20,28 +20,29 @@
 package jetbrick.web.mvc.router;
 
 import java.util.*;
-import jetbrick.collection.SoftHashMap;
-import jetbrick.collection.multimap.MultiValueHashMap;
-import jetbrick.collection.multimap.MultiValueMap;
 import jetbrick.util.StringUtils;
 import jetbrick.web.mvc.RouteInfo;
 import jetbrick.web.mvc.action.ActionInfo;
-import jetbrick.web.mvc.action.PathVariables;
 
 /*
  * <h2>分组匹配算法</h2>
  * <ol>
  *   <li>按照 HttpMethod 分组</li>
- *   <li>按照静态/动态 URL 分组(cache)</li>
+ *   <li>按照静态/动态 URL 分组(动态 URL 使用有上限的 RouteCache 进行缓存)</li>
  *   <li>动态 URL 先按照 path 长度分组，再按照 group 分组</li>
  * </ol>
  */
 final class RestfulMatcher {
     private static final int MAX_PATH_PARTS = 20;
+    private static final ActionInfo[] EMPTY_ACTIONS = new ActionInfo[0];
     private Map<String, RouteInfo> staticUrls = new HashMap<String, RouteInfo>(128);
-    private Map<String, RouteInfo> cachedUrls = new SoftHashMap<String, RouteInfo>(256);
+    private final RouteCache cachedUrls; // 为 null 表示不使用缓存
     private OneByOneMatcher[] matchers = new OneByOneMatcher[MAX_PATH_PARTS]; // 按照长度分组
 
+    public RestfulMatcher(RouteCache cachedUrls) {
+        this.cachedUrls = cachedUrls;
+    }
+
     public void register(ActionInfo action, String url) {
         if (url.indexOf('{') == -1) {
             staticUrls.put(url, new RouteInfo(action));
@@ -61,6 +62,10 @@ final class RestfulMatcher {
         }
     }
 
+    public RouteCache getRouteCache() {
+        return cachedUrls;
+    }
+
     public RouteInfo lookup(String url) {
         // 1. 查询静态路由
         RouteInfo info = staticUrls.get(url);
@@ -70,21 +75,27 @@ final class RestfulMatcher {
         }
 
         // 2. 查询动态路由缓存
-        info = cachedUrls.get(url);
-
-        if (info != null) {
-            return info;
+        if (cachedUrls != null) {
+            info = cachedUrls.get(url);
+            if (info != null) {
+                return info;
+            }
         }
 
         // 3. 开始执行动态路由匹配 (分组匹配)
-        String[] urlSegments = StringUtils.split(url.substring(1), '/');
-        if (urlSegments.length >= MAX_PATH_PARTS) {
-            throw new IllegalStateException("exceed max url parts: " + url);
-        }
+        MatchContext ctx = MatchContext.get(url);
+        try {
+            int segmentCount = ctx.getSegmentCount();
+            if (segmentCount >= MAX_PATH_PARTS) {
+                throw new IllegalStateException("exceed max url parts: " + url);
+            }
 
-        OneByOneMatcher matcher = matchers[urlSegments.length];
-        if (matcher != null) {
-            info = matcher.lookup(urlSegments);
+            OneByOneMatcher matcher = matchers[segmentCount];
+            if (matcher != null) {
+                info = matcher.lookup(ctx);
+            }
+        } finally {
+            ctx.release();
         }
 
         // 4. 加入缓存
@@ -92,7 +103,9 @@ final class RestfulMatcher {
             info = RouteInfo.NOT_FOUND;
         }
 
-        cachedUrls.put(url, info);
+        if (cachedUrls != null) {
+            cachedUrls.put(url, info);
+        }
 
         // 5. 返回
         return info;
@@ -100,44 +113,49 @@ final class RestfulMatcher {
 
     // 动态路由匹配(逐个匹配)
     static final class OneByOneMatcher {
-        private final MultiValueMap<String, ActionInfo> groups = new MultiValueHashMap<String, ActionInfo>(256);
-        private final List<ActionInfo> ungroupList = new ArrayList<ActionInfo>(32);
+        private final SegmentTable<ActionInfo[]> groups = new SegmentTable<ActionInfo[]>();
+        private ActionInfo[] ungroupList = EMPTY_ACTIONS;
 
         // 添加路由信息（按照 URL 前缀分组）
         public void register(ActionInfo action, String[] urlSegments) {
             String group = urlSegments[0];
             if (group.indexOf('{') == -1) {
-                groups.put(group, action);
+                ActionInfo[] actions = groups.get(group);
+                groups.put(group, append(actions == null ? EMPTY_ACTIONS : actions, action));
             } else {
-                ungroupList.add(action);
+                ungroupList = append(ungroupList, action);
             }
         }
 
-        public RouteInfo lookup(String[] urlSegments) {
-            // 1. 先 new 出一个存放 URL PathVariables 的对象
-            PathVariables pathVariables = new PathVariables();
-
-            // 2. 分组查询
-            String group = urlSegments[0];
-            List<ActionInfo> actions = groups.getList(group);
+        public RouteInfo lookup(MatchContext ctx) {
+            // 1. 分组查询 (直接和 URL 的第一个 segment 比较，不需要 substring)
+            ActionInfo[] actions = groups.get(ctx, 0);
             if (actions != null) {
-                RouteInfo info = doLookup(actions, urlSegments, pathVariables);
+                RouteInfo info = doLookup(actions, ctx);
                 if (info != null) {
                     return info;
                 }
             }
 
-            // 3. 查找未分组的内容
-            return doLookup(ungroupList, urlSegments, pathVariables);
+            // 2. 查找未分组的内容
+            return doLookup(ungroupList, ctx);
         }
 
-        private RouteInfo doLookup(List<ActionInfo> actions, String[] urlSegments, PathVariables pathVariables) {
-            for (ActionInfo action : actions) {
-                if (action.match(urlSegments, pathVariables)) {
-                    return new RouteInfo(action, pathVariables);
+        private RouteInfo doLookup(ActionInfo[] actions, MatchContext ctx) {
+            for (int i = 0; i < actions.length; i++) {
+                ActionInfo action = actions[i];
+                if (action.getUrlTemplate().match(ctx)) {
+                    // 只有匹配成功才生成 PathVariables
+                    return new RouteInfo(action, ctx.toPathVariables());
                 }
             }
             return null;
         }
+
+        private static ActionInfo[] append(ActionInfo[] actions, ActionInfo action) {
+            ActionInfo[] results = Arrays.copyOf(actions, actions.length + 1);
+            results[actions.length] = action;
+            return results;
+        }
     }
 }
@@ -20,78 +20,69 @@
 package jetbrick.web.mvc.router;
 
 import javax.servlet.http.HttpServletRequest;
-import jetbrick.bean.KlassInfo;
-import jetbrick.bean.MethodInfo;
-import jetbrick.util.*;
-import jetbrick.util.annotation.ValueConstants;
-import jetbrick.web.mvc.*;
-import jetbrick.web.mvc.action.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import jetbrick.web.mvc.RouteInfo;
+import jetbrick.web.mvc.action.ActionInfo;
+import jetbrick.web.mvc.action.HttpMethod;
 
 /**
- * <h2>URL 映射规则：</h2>
- * <ul>
- *   <li>/users + (null)  == /users/(method)</li>
- *   <li>/users + (empty) == /users/(method)</li>
- *   <li>/users + /       == /users/</li>
- *   <li>/users + /add    == /users/add</li>
- * </ul>
+ * 按照长度/前缀分组，逐个进行匹配的路由实现.
+ *
+ * <p>动态 URL 的匹配结果会放入 {@link RouteCache}，可以通过下面的方式配置：</p>
+ * <pre>
+ * web.urls.router = $router
+ * $router = jetbrick.web.mvc.router.RestfulRouter
+ * $router.cacheSize = 1024
+ * $router.cacheNotFound = false
+ * $router.cachePathVariables = true
+ * </pre>
+ *
+ * @see AbstractRouter
  */
-public final class RestfulRouter implements Router {
-    private final Logger log = LoggerFactory.getLogger(RestfulRouter.class);
-    private final RestfulMatcher[] matchers = new RestfulMatcher[HttpMethod.METHOD_LENGTH];
-
-    /**
-     * 根据 annotation，获取所有的 Action
-     */
-    @Override
-    public void registerController(Class<?> clazz) {
-        Controller controller = clazz.getAnnotation(Controller.class);
-        Validate.notNull(controller);
-
-        String ctrlPath = ValueConstants.trimToEmpty(controller.value());
-        ControllerInfo ctrlInfo = new ControllerInfo(clazz, controller);
-
-        ResultHandlerResolver resultHandlerResolver = WebConfig.getResultHandlerResolver();
-        KlassInfo klass = KlassInfo.create(clazz);
-
-        for (MethodInfo actionMethod : klass.getMethods()) {
-            if (!klass.isPublic() || actionMethod.isStatic()) {
-                continue;
-            }
-
-            Action action = actionMethod.getAnnotation(Action.class);
-            if (action == null) {
-                continue;
-            }
+public final class RestfulRouter extends AbstractRouter {
+    public static final int DEFAULT_CACHE_SIZE = 1024;
 
-            String actionPath = ValueConstants.defaultValue(action.value(), actionMethod.getName());
-            String url = StringUtils.removeEnd(ctrlPath, "/") + StringUtils.prefix(actionPath, "/");
+    private final RestfulMatcher[] matchers = new RestfulMatcher[HttpMethod.METHOD_LENGTH];
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private boolean cacheNotFound = false;
+    private boolean cachePathVariables = true;
 
-            // validate the action result type
-            Class<?> returnClass = actionMethod.getRawReturnType(clazz);
-            if (!resultHandlerResolver.validate(returnClass)) {
-                throw new IllegalStateException("Unsupported result class: " + returnClass.getName() + " of " + actionMethod);
-            }
+    // 每个 HttpMethod 最多缓存的 URL 个数，0 表示不使用缓存
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
 
-            HttpMethod[] httpMethods = action.method();
-            Validate.isTrue(httpMethods.length > 0);
+    // 是否缓存 404 的 URL
+    public void setCacheNotFound(boolean cacheNotFound) {
+        this.cacheNotFound = cacheNotFound;
+    }
 
-            if (log.isDebugEnabled()) {
-                log.debug("found action: {} {}", ArrayUtils.toString(httpMethods), url);
-            }
+    // 是否缓存带有 PathVariables 的 URL
+    public void setCachePathVariables(boolean cachePathVariables) {
+        this.cachePathVariables = cachePathVariables;
+    }
 
-            ActionInfo actionInfo = new ActionInfo(ctrlInfo, actionMethod, url);
-            for (HttpMethod method : httpMethods) {
-                RestfulMatcher matcher = matchers[method.getIndex()];
-                if (matcher == null) {
-                    matcher = new RestfulMatcher();
-                    matchers[method.getIndex()] = matcher;
-                }
-                matcher.register(actionInfo, url);
+    @Override
+    protected void register(HttpMethod method, ActionInfo action, String url) {
+        RestfulMatcher matcher = matchers[method.getIndex()];
+        if (matcher == null) {
+            RouteCache cache = null;
+            if (cacheSize > 0) {
+                cache = new RouteCache(cacheSize, cacheNotFound, cachePathVariables);
             }
+            matcher = new RestfulMatcher(cache);
+            matchers[method.getIndex()] = matcher;
         }
+        matcher.register(action, url);
+    }
+
+    /**
+     * 返回指定 HttpMethod 的路由缓存 (用来获取 hit/miss/eviction 等统计数据).
+     *
+     * @return 如果没有使用缓存，返回 null.
+     */
+    public RouteCache getRouteCache(HttpMethod method) {
+        RestfulMatcher matcher = matchers[method.getIndex()];
+        return (matcher == null) ? null : matcher.getRouteCache();
     }
 
     @Override
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2013-2014 Guoqiang Chen, Shanghai, China. All rights reserved.
+ *
+ *   Author: Guoqiang Chen
+ *    Email: subchen@gmail.com
+ *   WebURL: https://github.com/subchen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jetbrick.web.mvc.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jetbrick.web.mvc.RouteInfo;
+
+/**
+ * 线程安全的、有容量上限的动态路由缓存.
+ *
+ * <p>内部按照 URL 的 hash 分成多个 segment，每个 segment 是一个独立加锁的 LRU 表，
+ * 不同 segment 之间互不阻塞.</p>
+ */
+public final class RouteCache {
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+    private final int capacity;
+    private final boolean cacheNotFound;
+    private final boolean cachePathVariables;
+
+    /**
+     * @param capacity           最多缓存的 URL 个数
+     * @param cacheNotFound      是否缓存 {@link RouteInfo#NOT_FOUND}
+     * @param cachePathVariables 是否缓存带有 PathVariables 的结果 (这种 URL 的个数往往是无限的)
+     */
+    public RouteCache(int capacity, boolean cacheNotFound, boolean cachePathVariables) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.cacheNotFound = cacheNotFound;
+        this.cachePathVariables = cachePathVariables;
+
+        int segmentCapacity = Math.max(1, (capacity + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    public RouteInfo get(String url) {
+        return segmentFor(url).get(url);
+    }
+
+    public void put(String url, RouteInfo info) {
+        if (info == RouteInfo.NOT_FOUND) {
+            if (!cacheNotFound) {
+                return;
+            }
+        } else if (!cachePathVariables && info.hasPathVariables()) {
+            return;
+        }
+        segmentFor(url).put(url, info);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.hitCount();
+        }
+        return count;
+    }
+
+    public long getMissCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.missCount();
+        }
+        return count;
+    }
+
+    public long getEvictionCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.evictionCount();
+        }
+        return count;
+    }
+
+    private Segment segmentFor(String url) {
+        int h = url.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    @Override
+    public String toString() {
+        return "RouteCache[capacity=" + capacity + ", size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    // 独立加锁的 LRU 表
+    static final class Segment {
+        private final LruMap map;
+        private long hitCount;
+        private long missCount;
+        private long evictionCount;
+
+        public Segment(int capacity) {
+            this.map = new LruMap(capacity);
+        }
+
+        public synchronized RouteInfo get(String url) {
+            RouteInfo info = map.get(url);
+            if (info == null) {
+                missCount++;
+            } else {
+                hitCount++;
+            }
+            return info;
+        }
+
+        public synchronized void put(String url, RouteInfo info) {
+            map.put(url, info);
+        }
+
+        public synchronized void clear() {
+            map.clear();
+        }
+
+        public synchronized int size() {
+            return map.size();
+        }
+
+        public synchronized long hitCount() {
+            return hitCount;
+        }
+
+        public synchronized long missCount() {
+            return missCount;
+        }
+
+        public synchronized long evictionCount() {
+            return evictionCount;
+        }
+
+        @SuppressWarnings("serial")
+        final class LruMap extends LinkedHashMap<String, RouteInfo> {
+            private final int capacity;
+
+            public LruMap(int capacity) {
+                super(capacity * 4 / 3 + 1, 0.75f, true);
+                this.capacity = capacity;
+            }
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RouteInfo> eldest) {
+                if (size() > capacity) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+}
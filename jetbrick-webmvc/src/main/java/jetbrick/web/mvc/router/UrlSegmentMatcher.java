@@ -33,6 +33,20 @@ public abstract class UrlSegmentMatcher {
 
     public abstract boolean match(String urlSegment, PathVariables pathVariables);
 
+    /**
+     * 直接和 MatchContext 中的第 index 个 segment 进行匹配 (不产生 segment 的 String 对象).
+     */
+    boolean match(MatchContext ctx, int index) {
+        PathVariables pathVariables = new PathVariables();
+        if (match(ctx.getSegment(index), pathVariables)) {
+            for (Map.Entry<String, String> entry : pathVariables.map().entrySet()) {
+                ctx.addVariable(entry.getKey(), entry.getValue());
+            }
+            return true;
+        }
+        return false;
+    }
+
     public static UrlSegmentMatcher create(String urlSegment) {
         UrlSegmentMatcher matcher = cache.get(urlSegment);
         if (matcher == null) {
@@ -78,6 +92,11 @@ public abstract class UrlSegmentMatcher {
         public boolean match(String urlSegment, PathVariables pathVariables) {
             return pattern.equals(urlSegment);
         }
+
+        @Override
+        boolean match(MatchContext ctx, int index) {
+            return ctx.segmentEquals(index, pattern);
+        }
     }
 
     // 任意匹配 (*)
@@ -94,6 +113,13 @@ public abstract class UrlSegmentMatcher {
 
             return true;
         }
+
+        @Override
+        boolean match(MatchContext ctx, int index) {
+            ctx.addVariable(name, ctx.getSegmentStart(index), ctx.getSegmentEnd(index));
+
+            return true;
+        }
     }
 
     // 通配符匹配
@@ -108,11 +134,16 @@ public abstract class UrlSegmentMatcher {
         public boolean match(String urlSegment, PathVariables pathVariables) {
             return WildcharUtils.match(urlSegment, pattern);
         }
+
+        @Override
+        boolean match(MatchContext ctx, int index) {
+            return WildcharUtils.match(ctx.getSegment(index), pattern);
+        }
     }
 
     // 正则表达式匹配
     static abstract class RegexUrlSegmentMatcher extends UrlSegmentMatcher {
-        private static final Pattern PATH_PARAM_PATTERN = Pattern.compile("\\{[^}]+\\}");
+        private static final Pattern PATH_PARAM_PATTERN = Pattern.compile("\\{([^}]+)\\}");
 
         public static RegexUrlSegmentMatcher create(String urlSegment) {
             if (JdkUtils.IS_AT_LEAST_JAVA_7) {
@@ -145,7 +176,7 @@ public abstract class UrlSegmentMatcher {
                     namedGroupList.add(name);
                 }
 
-                lastpos = m.end() + 1;
+                lastpos = m.end();
             }
 
             if (lastpos < urlSegment.length()) {
@@ -184,11 +215,19 @@ public abstract class UrlSegmentMatcher {
     // 正则表达式匹配(JDK7)
     static final class Jdk7RegexUrlSegmentMatcher extends RegexUrlSegmentMatcher {
         private final Pattern pattern;
-        private final List<String> namedGroupList;
+        private final String[] namedGroups;
+        private final ThreadLocal<Matcher> threadMatcher; // 每个线程重复使用同一个 Matcher
 
         public Jdk7RegexUrlSegmentMatcher(String urlSegment) {
-            this.namedGroupList = new ArrayList<String>(8);
+            List<String> namedGroupList = new ArrayList<String>(8);
             this.pattern = Pattern.compile(toPattern(urlSegment, namedGroupList));
+            this.namedGroups = namedGroupList.toArray(new String[namedGroupList.size()]);
+            this.threadMatcher = new ThreadLocal<Matcher>() {
+                @Override
+                protected Matcher initialValue() {
+                    return pattern.matcher("");
+                }
+            };
         }
 
         @Override
@@ -196,7 +235,7 @@ public abstract class UrlSegmentMatcher {
             Matcher matcher = pattern.matcher(urlSegment);
 
             if (matcher.matches()) {
-                for (String name : namedGroupList) {
+                for (String name : namedGroups) {
                     String value = matcher.group(name);
                     pathVariables.add(name, value);
                 }
@@ -205,5 +244,21 @@ public abstract class UrlSegmentMatcher {
 
             return false;
         }
+
+        @Override
+        boolean match(MatchContext ctx, int index) {
+            Matcher matcher = threadMatcher.get();
+            matcher.reset(ctx.getPath());
+            matcher.region(ctx.getSegmentStart(index), ctx.getSegmentEnd(index));
+
+            boolean matched = matcher.matches();
+            if (matched) {
+                for (String name : namedGroups) {
+                    ctx.addVariable(name, matcher.group(name));
+                }
+            }
+            matcher.reset(""); // 释放对 path 的引用
+            return matched;
+        }
     }
 }
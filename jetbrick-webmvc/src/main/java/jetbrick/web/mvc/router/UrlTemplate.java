@@ -59,6 +59,23 @@ public final class UrlTemplate {
         return true;
     }
 
+    // 和 MatchContext 中的 URL 进行匹配，匹配到的参数存放在 MatchContext 中
+    boolean match(MatchContext ctx) {
+        if (ctx.getSegmentCount() != matchers.length) {
+            return false;
+        }
+
+        int mark = ctx.getVariableCount();
+        for (int i = 0; i < matchers.length; i++) {
+            if (!matchers[i].match(ctx, i)) {
+                ctx.truncate(mark); // 注意：不匹配的情况下，需要清除此次匹配的内容
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     @Override
     public String toString() {
         return url;